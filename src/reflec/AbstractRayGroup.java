@@ -2,6 +2,8 @@ package reflec;
 
 import java.util.Objects;
 
+import reflec.Buffer.CancelStatus;
+
 import com.google.common.base.Preconditions;
 
 public abstract class AbstractRayGroup implements RayGroup {
@@ -9,19 +11,25 @@ public abstract class AbstractRayGroup implements RayGroup {
 
     private final int reflectionLevel;
 
+    private final ImmutablePoint source;
+
     private final ImmutableLine gate;
 
     private final double travelledDistance;
 
+    /** Built on first use, see toBeam() */
+    private volatile Beam beam;
+
     protected AbstractRayGroup(
     final Model model, final int reflectionLevel,
     final ImmutablePoint source, final ImmutableLine gate) {
         this.model = Objects.requireNonNull(model);
         this.reflectionLevel = reflectionLevel;
+        this.source = Objects.requireNonNull(source);
         this.gate = gate;
         travelledDistance = gate.ptSegDist(source);
         {
-            final double gateLength = gate.p1.distance(gate.p2);
+            final double gateLength = gate.length();
             if ((gate.p1 != source || gate.p2 != source)
                 && gateLength < 0.000001) {
                 System.err.format(
@@ -39,6 +47,11 @@ public abstract class AbstractRayGroup implements RayGroup {
             source.toRawString());
     }
 
+    @Override
+    public final ReflectionResult doReflection() {
+        return doReflection(CancelStatus.CONTINUE);
+    }
+
     @Override
     public final double getTravelledDistance() {
         return travelledDistance;
@@ -49,6 +62,14 @@ public abstract class AbstractRayGroup implements RayGroup {
         return reflectionLevel;
     }
 
+    /**
+     * @return where the rays of this group seem to come from, i.e. the
+     *         source mirrored at all mirrors on the way
+     */
+    protected final ImmutablePoint getSource() {
+        return source;
+    }
+
     /**
      * Returns the gate. The fields p1 and p2 are ordered counter-clockwise.
      * Mnemonic: Counter Clockwise Counting
@@ -59,12 +80,37 @@ public abstract class AbstractRayGroup implements RayGroup {
         return gate;
     }
 
+    /**
+     * Returns the covered area. It only depends on the group, so it's built
+     * once and then reused by every repaint. (Worst case, two threads build
+     * it at the same time, which is harmless.)
+     */
+    @Override
+    public final Beam toBeam() {
+        Beam ret = beam;
+        if (null == ret) {
+            ret = buildBeam();
+            beam = ret;
+        }
+        return ret;
+    }
+
+    protected abstract Beam buildBeam();
+
     protected final String toIdentString() {
         return super.toString();
     }
 
-    protected abstract Beam.Builder getCoveredAreaBuilder(
-    final ImmutableLine via);
-
     public abstract Ray.Builder pathTo(final ImmutablePoint dst);
+
+    /**
+     * Quick check whether dst is on the right side of the gate at all.
+     *
+     * @param dst
+     *            the point of interest
+     * @return false if this group can't possibly see dst
+     */
+    protected boolean mayReach(final ImmutablePoint dst) {
+        return true;
+    }
 }
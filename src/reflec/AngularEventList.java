@@ -0,0 +1,400 @@
+package reflec;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * All events of a sweep around a center, stored in parallel primitive arrays
+ * and sorted in one go. This replaces a TreeSet&lt;SweepEvent&gt;, which
+ * needed a tree node and a SweepEvent for every single event, even if the
+ * sweep never got to look at it.
+ *
+ * The order is by angle, type, which end, and then both endpoints of the
+ * line. The angle is compared by its pseudo-angle, or exactly where those are
+ * too close to tell (see ImmutablePoint). Events that compare equal
+ * are collapsed into the first one added, just like the TreeSet did.
+ *
+ * SweepEvent objects are only materialized when they are first asked for, and
+ * then reused, so a sweep that wraps around sees the identical objects again.
+ *
+ * Where one mirror ends and the next one begins at the same vertex, as along
+ * the outline of a building, mergeTransitions() turns the two events into a
+ * single TRANSITION.
+ */
+public final class AngularEventList {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte WHICH_POINT = 0;
+
+    private static final byte WHICH_P1 = 1;
+
+    private static final byte WHICH_P2 = 2;
+
+    private static final SweepEvent.Type[] TYPES = SweepEvent.Type.values();
+
+    private final ImmutablePoint center;
+
+    private double[] angles = new double[INITIAL_CAPACITY];
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+
+    private byte[] whichs = new byte[INITIAL_CAPACITY];
+
+    private int[] refs = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    private ImmutableLine[] lines = new ImmutableLine[INITIAL_CAPACITY];
+
+    private int nLines;
+
+    private ImmutablePoint[] points = new ImmutablePoint[1];
+
+    private int nPoints;
+
+    private int[] order;
+
+    /**
+     * The raw index of the END merged into the event at that sorted
+     * position, or -1. null if nothing was merged.
+     */
+    private int[] partners;
+
+    private SweepEvent[] materialized;
+
+    public AngularEventList(final ImmutablePoint center) {
+        this.center = center;
+    }
+
+    /**
+     * Adds the BEGIN and END event of the given line.
+     *
+     * @param line
+     *            the line to add
+     * @return the raw index of the BEGIN event. The END event has the next raw
+     *         index.
+     */
+    public int addLine(final ImmutableLine line) {
+        Preconditions.checkState(null == order);
+        if (nLines == lines.length) {
+            lines = Arrays.copyOf(lines, 2 * nLines);
+        }
+        final int ref = nLines++;
+        lines[ref] = line;
+
+        final boolean swapEnds = line.relativeCCW(center) > 0;
+        final int begin = append(SweepEvent.Type.BEGIN, ref,
+            swapEnds ? WHICH_P2 : WHICH_P1);
+        append(SweepEvent.Type.END, ref, swapEnds ? WHICH_P1 : WHICH_P2);
+        return begin;
+    }
+
+    public int addPoint(final ImmutablePoint point) {
+        Preconditions.checkState(null == order);
+        if (nPoints == points.length) {
+            points = Arrays.copyOf(points, 2 * nPoints);
+        }
+        final int ref = nPoints++;
+        points[ref] = point;
+        return append(SweepEvent.Type.POINT, ref, WHICH_POINT);
+    }
+
+    private int append(final SweepEvent.Type type, final int ref,
+    final byte which) {
+        if (size == angles.length) {
+            final int capacity = 2 * size;
+            angles = Arrays.copyOf(angles, capacity);
+            types = Arrays.copyOf(types, capacity);
+            whichs = Arrays.copyOf(whichs, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+        final int index = size++;
+        types[index] = (byte) type.ordinal();
+        whichs[index] = which;
+        refs[index] = ref;
+        angles[index] = center.pseudoAngle(point(index));
+        return index;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * @return the number of distinct events, only valid after sort()
+     */
+    public int size() {
+        Preconditions.checkState(null != order);
+        return order.length;
+    }
+
+    public void sort() {
+        Preconditions.checkState(null == order);
+        final int[] sorted = new int[size];
+        for (int i = 0; i < size; ++i) {
+            sorted[i] = i;
+        }
+        mergeSort(sorted, new int[size], 0, size);
+
+        /* Collapse duplicates, keeping the first one (merge sort is stable) */
+        int distinct = 0;
+        for (int i = 0; i < size; ++i) {
+            if (0 == distinct
+                || 0 != compare(sorted[distinct - 1], sorted[i])) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        order = distinct == size ? sorted : Arrays.copyOf(sorted, distinct);
+        materialized = new SweepEvent[distinct];
+    }
+
+    /**
+     * Merges each END and BEGIN at the same vertex into one TRANSITION,
+     * which is then sorted where the BEGIN was. That's only done if nothing
+     * else happens at that angle, so the order of the sweep is the same as
+     * before, just with fewer events. Must be called after sort().
+     *
+     * @param start
+     *            the event the sweep will start with, or null. Nothing is
+     *            merged at its angle, so the start can't fall in between,
+     *            nor at the first event, which callers like to look at
+     *            before the sweep really starts.
+     * @return the number of merged pairs
+     */
+    public int mergeTransitions(final SweepEvent start) {
+        Preconditions.checkState(null != order && null == partners);
+        final int n = order.length;
+        if (n < 2) {
+            return 0;
+        }
+        final int first = ceiling(start) % n;
+        int merged = 0;
+        for (int i = 0; i + 1 < n; ++i) {
+            if (i != first && isTransition(i, start)) {
+                ++merged;
+                ++i;
+            }
+        }
+        if (0 == merged) {
+            return 0;
+        }
+
+        final int[] newOrder = new int[n - merged];
+        partners = new int[n - merged];
+        int out = 0;
+        for (int i = 0; i < n; ++i) {
+            newOrder[out] = order[i];
+            if (i + 1 < n && i != first && isTransition(i, start)) {
+                partners[out++] = order[++i];
+            } else {
+                partners[out++] = -1;
+            }
+        }
+        order = newOrder;
+        materialized = new SweepEvent[newOrder.length];
+        return merged;
+    }
+
+    /**
+     * @return whether the events at sorted positions i and i + 1 are BEGIN
+     *         and END at the same vertex, and alone at their angle
+     */
+    private boolean isTransition(final int i, final SweepEvent start) {
+        final int begin = order[i];
+        final int end = order[i + 1];
+        return SweepEvent.Type.BEGIN.ordinal() == types[begin]
+            && SweepEvent.Type.END.ordinal() == types[end]
+            && refs[begin] != refs[end]
+            && 0 == comparePoints(point(begin), point(end))
+            && (0 == i || 0 != compareAngles(order[i - 1], begin))
+            && (i + 2 == order.length
+                || 0 != compareAngles(order[i + 2], begin))
+            && (null == start || 0 != compareAngles(begin, start));
+    }
+
+    private void mergeSort(final int[] arr, final int[] scratch,
+    final int from, final int to) {
+        if (to - from < 2) {
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(arr, scratch, from, mid);
+        mergeSort(arr, scratch, mid, to);
+        if (compare(arr[mid - 1], arr[mid]) <= 0) {
+            /* Already in order */
+            return;
+        }
+
+        System.arraycopy(arr, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || (left < mid
+                && compare(scratch[left], scratch[right]) <= 0)) {
+                arr[i] = scratch[left++];
+            } else {
+                arr[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Finds the position where iteration has to start in order to begin with
+     * the given event. This is what SortedSet#tailSet() did.
+     *
+     * @param start
+     *            the event to start with, or null to start at the beginning
+     * @return the first sorted position not less than start, which may be
+     *         size() if there is none
+     */
+    public int ceiling(final SweepEvent start) {
+        Preconditions.checkState(null != order);
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(order[mid], start) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param position
+     *            the sorted position, in [0, size())
+     * @return the event at that position, always the same object
+     */
+    public SweepEvent get(final int position) {
+        SweepEvent ev = materialized[position];
+        if (null == ev) {
+            ev = create(order[position]);
+            if (null != partners && partners[position] >= 0) {
+                ev = SweepEvent.transition(ev, create(partners[position]));
+            }
+            materialized[position] = ev;
+        }
+        return ev;
+    }
+
+    private SweepEvent create(final int index) {
+        final SweepEvent.Type type = TYPES[types[index]];
+        if (SweepEvent.Type.POINT == type) {
+            return SweepEvent.create(points[refs[index]], angles[index]);
+        }
+        return SweepEvent.create(type, lines[refs[index]],
+            WHICH_P2 == whichs[index], angles[index]);
+    }
+
+    /**
+     * Compares two events by their raw indices, as returned by addLine() and
+     * addPoint().
+     */
+    public int compare(final int i, final int j) {
+        if (i == j) {
+            return 0;
+        }
+        int res = compareAngles(i, j);
+        if (0 != res) {
+            return res;
+        }
+        res = Integer.compare(types[i], types[j]);
+        if (0 != res) {
+            return res;
+        }
+        res = Integer.compare(whichs[i], whichs[j]);
+        if (0 != res) {
+            return res;
+        }
+        res = comparePoints(p1(i), p1(j));
+        if (0 != res) {
+            return res;
+        }
+        return comparePoints(p2(i), p2(j));
+    }
+
+    /**
+     * Compares an event by its raw index with a "foreign" event. Null is less
+     * than everything.
+     */
+    public int compare(final int i, final SweepEvent that) {
+        if (null == that) {
+            return 1;
+        }
+        int res = compareAngles(i, that);
+        if (0 != res) {
+            return res;
+        }
+        res = Integer.compare(types[i], that.type.ordinal());
+        if (0 != res) {
+            return res;
+        }
+        res = Integer.compare(whichs[i], that.which);
+        if (0 != res) {
+            return res;
+        }
+        res = comparePoints(p1(i), that.l.p1);
+        if (0 != res) {
+            return res;
+        }
+        return comparePoints(p2(i), that.l.p2);
+    }
+
+    private int compareAngles(final int i, final int j) {
+        return compareAngles(angles[i], point(i), angles[j], point(j));
+    }
+
+    private int compareAngles(final int i, final SweepEvent that) {
+        return compareAngles(angles[i], point(i), that.angle, that.p);
+    }
+
+    /**
+     * Compares the pseudo-angles, unless they are too close to be sure.
+     */
+    private int compareAngles(final double angleA, final ImmutablePoint a,
+    final double angleB, final ImmutablePoint b) {
+        if (!(Math.abs(angleA - angleB)
+            <= ImmutablePoint.PSEUDO_ANGLE_ERROR)) {
+            /* Also where there are NaNs */
+            return Double.compare(angleA, angleB);
+        }
+        return center.compareAngles(a, b);
+    }
+
+    private ImmutablePoint point(final int index) {
+        switch (whichs[index]) {
+            case WHICH_P1:
+                return lines[refs[index]].p1;
+            case WHICH_P2:
+                return lines[refs[index]].p2;
+            case WHICH_POINT:
+                return points[refs[index]];
+            default:
+                throw new InternalError();
+        }
+    }
+
+    private ImmutablePoint p1(final int index) {
+        return WHICH_POINT == whichs[index]
+            ? points[refs[index]]
+            : lines[refs[index]].p1;
+    }
+
+    private ImmutablePoint p2(final int index) {
+        return WHICH_POINT == whichs[index]
+            ? points[refs[index]]
+            : lines[refs[index]].p2;
+    }
+
+    private static int comparePoints(
+    final ImmutablePoint o1, final ImmutablePoint o2) {
+        final int resX = Double.compare(o1.x, o2.x);
+        if (resX != 0) {
+            return resX;
+        }
+        return Double.compare(o1.y, o2.y);
+    }
+}
@@ -0,0 +1,296 @@
+package reflec;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import reflec.LevelExpander.Level;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Runs many model files through the engine, without any display.
+ *
+ * Usage: BatchRunner [-depth N] [-threads N] [-out DIR] FILE... where each
+ * FILE is a model in either format of SceneFile.load, or @LIST for a file
+ * with one path per line. The files are spread over the threads, one file
+ * per task, so all cores are busy even though each file is expanded
+ * sequentially.
+ *
+ * Prints one tab-separated line per file, in the given order: file, "ok" or
+ * "error", depth, groups expanded on all levels, rays, parse ms, compute
+ * ms. With -out, also writes DIR/PATH.rays for each file: the number of
+ * groups per level, each expanded group as its level, gate and (mirrored)
+ * source, and then each ray as its length and points. PATH is the
+ * file's path as given, without any root or leading "..", so files of the
+ * same name in different directories don't overwrite each other. If two
+ * files would still end up in the same place, nothing is run at all.
+ */
+public final class BatchRunner {
+    public static final int DEFAULT_DEPTH = 4;
+
+    private static final String COLUMNS =
+        "file\tstatus\tdepth\tgroups\trays\tparseMs\tcomputeMs";
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final int depth;
+
+    private final File outDir;
+
+    private BatchRunner(final int depth, final File outDir) {
+        this.depth = depth;
+        this.outDir = outDir;
+    }
+
+    public static void main(final String[] args)
+    throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        int depth = DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outDir = null;
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            final String arg = args[i];
+            if (i + 1 < args.length && "-depth".equals(arg)) {
+                depth = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "-threads".equals(arg)) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "-out".equals(arg)) {
+                outDir = new File(args[++i]);
+            } else if (arg.startsWith("@")) {
+                readList(new File(arg.substring(1)), files);
+            } else if (arg.startsWith("-")) {
+                usage();
+                return;
+            } else {
+                files.add(new File(arg));
+            }
+        }
+        if (depth < 0 || threads < 1 || files.isEmpty()) {
+            usage();
+            return;
+        }
+        if (null != outDir && !outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Can't create " + outDir);
+        }
+        if (null != outDir && !checkOutputs(files)) {
+            System.exit(2);
+            return;
+        }
+
+        final boolean allOk =
+            new BatchRunner(depth, outDir).runAll(files, threads);
+        if (!allOk) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchRunner [-depth N] [-threads N]"
+            + " [-out DIR] FILE|@LIST...");
+        System.exit(2);
+    }
+
+    private static void readList(final File list, final List<File> files)
+    throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(
+            new FileInputStream(list), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while (null != (line = in.readLine())) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    files.add(new File(line));
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return where the results for file go, relative to the output directory
+     */
+    static String outputPath(final File file) {
+        Path path = file.toPath().normalize();
+        if (null != path.getRoot()) {
+            path = path.getRoot().relativize(path);
+        }
+        while (path.getNameCount() > 1 && "..".equals(
+            path.getName(0).toString())) {
+            path = path.subpath(1, path.getNameCount());
+        }
+        return path + ".rays";
+    }
+
+    /**
+     * @return false if any two files would write the same output
+     */
+    private static boolean checkOutputs(final List<File> files) {
+        final Map<String, File> seen = new HashMap<>();
+        boolean ok = true;
+        for (final File file : files) {
+            final File other = seen.put(outputPath(file), file);
+            if (null != other) {
+                System.err.println(other + " and " + file
+                    + " would both write " + outputPath(file));
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * @return whether all files could be processed
+     */
+    private boolean runAll(final List<File> files, final int threads)
+    throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (final File file : files) {
+                results.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return run(file);
+                    }
+                }));
+            }
+
+            System.out.println(COLUMNS);
+            boolean allOk = true;
+            for (int i = 0; i < files.size(); ++i) {
+                String line;
+                try {
+                    line = results.get(i).get();
+                } catch (final ExecutionException e) {
+                    line = null;
+                    System.err.println(files.get(i) + ": " + e.getCause());
+                }
+                if (null == line) {
+                    allOk = false;
+                    line = files.get(i) + "\terror";
+                }
+                System.out.println(line);
+            }
+            return allOk;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the summary line, or null if the file couldn't be processed
+     */
+    private String run(final File file) {
+        final long start = System.nanoTime();
+        final Model model;
+        try {
+            model = SceneFile.load(file);
+        } catch (final IOException e) {
+            System.err.println(file + ": " + e);
+            return null;
+        }
+        final long parsed = System.nanoTime();
+
+        /* Level by level, just like DefaultMutableModel does */
+        final List<Integer> levelGroups = new ArrayList<>();
+        final List<RayGroup> expanded = new ArrayList<>();
+        final ImmutableList.Builder<Ray> rays = ImmutableList.builder();
+        ImmutableList<RayGroup> groups =
+            ImmutableList.<RayGroup> of(new SourceRayGroup(model));
+        int totalGroups = 0;
+        for (int level = 0; level <= depth && !groups.isEmpty(); ++level) {
+            levelGroups.add(Integer.valueOf(groups.size()));
+            totalGroups += groups.size();
+            if (null != outDir) {
+                expanded.addAll(groups);
+            }
+            final Level next = LevelExpander.SEQUENTIAL.expand(groups);
+            rays.addAll(next.getRays());
+            groups = next.getGroups();
+        }
+        final ImmutableList<Ray> found = rays.build();
+        final long computed = System.nanoTime();
+
+        if (null != outDir) {
+            try {
+                final File out = new File(outDir, outputPath(file));
+                final File parent = out.getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()
+                    && !parent.isDirectory()) {
+                    throw new IOException("Can't create " + parent);
+                }
+                write(out, levelGroups, expanded, found);
+            } catch (final IOException e) {
+                System.err.println(file + ": " + e);
+                return null;
+            }
+        }
+
+        return file + "\tok\t" + depth + "\t" + totalGroups + "\t"
+            + found.size() + "\t" + (parsed - start) / NANOS_PER_MILLI + "\t"
+            + (computed - parsed) / NANOS_PER_MILLI;
+    }
+
+    private static void write(final File out, final List<Integer> levelGroups,
+    final List<RayGroup> groups, final List<Ray> rays) throws IOException {
+        final Writer w = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(out), StandardCharsets.UTF_8));
+        try {
+            w.write("groups");
+            for (final Integer n : levelGroups) {
+                w.write(' ');
+                w.write(n.toString());
+            }
+            w.write('\n');
+            for (final RayGroup group : groups) {
+                /* All groups are AbstractRayGroups, see SourceRayGroup */
+                final AbstractRayGroup g = (AbstractRayGroup) group;
+                w.write("group ");
+                w.write(Integer.toString(g.getReflectionLevel()));
+                write(w, g.getGate().p1);
+                write(w, g.getGate().p2);
+                write(w, g.getSource());
+                w.write('\n');
+            }
+            for (final Ray ray : rays) {
+                w.write("ray ");
+                w.write(Double.toString(ray.getLength()));
+                for (final ImmutablePoint p : ray.points) {
+                    write(w, p);
+                }
+                w.write('\n');
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void write(final Writer w, final ImmutablePoint p)
+    throws IOException {
+        w.write(' ');
+        w.write(Double.toString(p.x));
+        w.write(' ');
+        w.write(Double.toString(p.y));
+    }
+}
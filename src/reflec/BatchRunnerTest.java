@@ -0,0 +1,73 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+public final class BatchRunnerTest {
+    private static final int DEPTH = 3;
+
+    public BatchRunnerTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testOutputPath() {
+        final String expected =
+            new File(new File("nightly", "a"), "scene.txt.rays").getPath();
+        assertEquals(expected,
+            BatchRunner.outputPath(new File("nightly/a/scene.txt")));
+        assertEquals(expected,
+            BatchRunner.outputPath(new File("./nightly/b/../a/scene.txt")));
+        assertEquals(expected,
+            BatchRunner.outputPath(new File("../../nightly/a/scene.txt")));
+        assertEquals(expected, BatchRunner.outputPath(
+            new File(File.separator + "nightly/a/scene.txt")));
+
+        /* Same name, other directory */
+        assertEquals(
+            new File(new File("nightly", "b"), "scene.txt.rays").getPath(),
+            BatchRunner.outputPath(new File("nightly/b/scene.txt")));
+    }
+
+    @Test
+    public void testOutput() throws IOException, InterruptedException {
+        final File dir = Files.createTempDirectory("batch").toFile();
+        final File out =
+            new File(dir, BatchRunner.outputPath(new File(Model.FILE_NAME)));
+        try {
+            BatchRunner.main(new String[] {"-depth", Integer.toString(DEPTH),
+                "-threads", "1", "-out", dir.getPath(), Model.FILE_NAME });
+            final List<String> lines =
+                Files.readAllLines(out.toPath(), StandardCharsets.UTF_8);
+
+            /* One line per expanded group, level by level */
+            final String[] counts = lines.get(0).split(" ");
+            assertEquals("groups", counts[0]);
+            int line = 1;
+            for (int level = 0; level < counts.length - 1; ++level) {
+                final int n = Integer.parseInt(counts[level + 1]);
+                for (int i = 0; i < n; ++i) {
+                    final String[] group = lines.get(line++).split(" ");
+                    assertEquals("group", group[0]);
+                    assertEquals(Integer.toString(level), group[1]);
+                    /* Gate and source */
+                    assertEquals(2 + 3 * 2, group.length);
+                }
+            }
+            assertEquals(
+                new DefaultMutableModel(Model.defaultModel(), DEPTH)
+                    .getRays().size(),
+                lines.size() - line);
+        } finally {
+            out.delete();
+            dir.delete();
+        }
+    }
+}
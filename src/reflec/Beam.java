@@ -1,92 +1,223 @@
 package reflec;
 
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
+/**
+ * The area covered by a RayGroup: starting at the source, through all the
+ * gates on the way. Each group builds its Beam only once, so the lines are
+ * kept as plain coordinates (x1, y1, x2, y2 per line), and the last rendering
+ * is remembered for as long as the transform doesn't change.
+ */
 public final class Beam {
     private final ImmutablePoint start;
 
-    private final ImmutableList<ImmutableLine> lines;
+    private final double[] coords;
 
-    private Beam(final ImmutablePoint start,
-    final ImmutableList<ImmutableLine> lines) {
+    private volatile ImmutableList<ImmutableLine> lines;
+
+    private volatile Rendering lastRendering;
+
+    private Beam(final ImmutablePoint start, final double[] coords) {
         this.start = start;
-        this.lines = lines;
+        this.coords = coords;
     }
 
     public ImmutableList<ImmutableLine> getLines() {
-        return lines;
+        ImmutableList<ImmutableLine> ret = lines;
+        if (null == ret) {
+            final ImmutableList.Builder<ImmutableLine> b =
+                ImmutableList.builder();
+            for (int i = 0; i < coords.length; i += 4) {
+                b.add(new ImmutableLine(
+                    coords[i], coords[i + 1], coords[i + 2], coords[i + 3]));
+            }
+            ret = b.build();
+            lines = ret;
+        }
+        return ret;
     }
 
     public ImmutablePoint getStart() {
         return start;
     }
 
+    /**
+     * Renders the beam. Don't modify the result, as it may be handed out
+     * again for the same transform.
+     *
+     * @param transform
+     *            the transform from model to screen coordinates
+     * @return outline and area of the beam
+     */
     public RenderedBeam render(final AffineTransform transform) {
-        final Point2D.Double last1 = new Point2D.Double();
-        final Point2D.Double last2 = new Point2D.Double();
-        final Point2D.Double next1 = new Point2D.Double();
-        final Point2D.Double next2 = new Point2D.Double();
-
-        transform.transform(start, last1);
-        transform.transform(lines.get(0).p1, next1);
-        transform.transform(lines.get(0).p2, next2);
-
-        final PathBuilder outline = PathBuilder.startNonzero(last1);
-        outline.then(next1).move(last1).then(next2);
-        final PathBuilder area = PathBuilder.startNonzero(last1);
-        area.then(next1).then(next2);
-
-        for (int i = 1; i < lines.size(); ++i) {
-            last1.setLocation(next1);
-            last2.setLocation(next2);
-            transform.transform(lines.get(i).p1, next1);
-            transform.transform(lines.get(i).p2, next2);
-
-            outline.move(last1).then(next2).move(last2).then(next1);
-            area.move(last1).then(last2).then(next1).then(next2);
+        final Rendering last = lastRendering;
+        if (null != last && last.transform.equals(transform)) {
+            return last.rendered;
+        }
+        final RenderedBeam ret = doRender(transform);
+        lastRendering = new Rendering(new AffineTransform(transform), ret);
+        return ret;
+    }
+
+    private RenderedBeam doRender(final AffineTransform transform) {
+        final double[] s = new double[] {start.x, start.y };
+        transform.transform(s, 0, s, 0, 1);
+        final double[] t = new double[coords.length];
+        transform.transform(coords, 0, t, 0, coords.length / 2);
+
+        final Path2D outline = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        final Path2D area = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        final Path2D centerline = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        centerline.moveTo(s[0], s[1]);
+        double x0 = s[0];
+        double y0 = s[1];
+        double x1 = s[0];
+        double y1 = s[1];
+        double maxWidth = 0;
+        for (int i = 0; i < t.length; i += 4) {
+            centerline.lineTo(
+                (t[i] + t[i + 2]) / 2, (t[i + 1] + t[i + 3]) / 2);
+            x0 = Math.min(x0, Math.min(t[i], t[i + 2]));
+            y0 = Math.min(y0, Math.min(t[i + 1], t[i + 3]));
+            x1 = Math.max(x1, Math.max(t[i], t[i + 2]));
+            y1 = Math.max(y1, Math.max(t[i + 1], t[i + 3]));
+            maxWidth = Math.max(maxWidth,
+                Math.hypot(t[i + 2] - t[i], t[i + 3] - t[i + 1]));
+        }
+
+        outline.moveTo(s[0], s[1]);
+        outline.lineTo(t[0], t[1]);
+        outline.closePath();
+        outline.moveTo(s[0], s[1]);
+        outline.lineTo(t[2], t[3]);
+        area.moveTo(s[0], s[1]);
+        area.lineTo(t[0], t[1]);
+        area.lineTo(t[2], t[3]);
+
+        for (int i = 4; i < t.length; i += 4) {
+            /* last = t[i - 4 .. i), next = t[i .. i + 4) */
+            outline.closePath();
+            outline.moveTo(t[i - 4], t[i - 3]);
+            outline.lineTo(t[i + 2], t[i + 3]);
+            outline.closePath();
+            outline.moveTo(t[i - 2], t[i - 1]);
+            outline.lineTo(t[i], t[i + 1]);
+
+            area.closePath();
+            area.moveTo(t[i - 4], t[i - 3]);
+            area.lineTo(t[i - 2], t[i - 1]);
+            area.lineTo(t[i], t[i + 1]);
+            area.lineTo(t[i + 2], t[i + 3]);
         }
 
-        return new RenderedBeam(outline.build(), area.build());
+        return new RenderedBeam(outline, area, centerline,
+            new Rectangle2D.Double(x0, y0, x1 - x0, y1 - y0), maxWidth);
     }
 
-    public static final class Builder {
-        private static final boolean STRICT = true;
+    private static final class Rendering {
+        public final AffineTransform transform;
 
-        private final ImmutablePoint start;
+        public final RenderedBeam rendered;
 
-        private final ImmutableList.Builder<ImmutableLine> lines =
-            ImmutableList.builder();
+        public Rendering(final AffineTransform transform,
+        final RenderedBeam rendered) {
+            this.transform = transform;
+            this.rendered = rendered;
+        }
+    }
 
-        private ImmutableLine lastLine;
+    /**
+     * Builds a beam backwards, from the group's gate to the source: each
+     * mirror on the way narrows the beam to the part that ends up at the
+     * gate. All lines go straight into the beam's coordinates.
+     */
+    public static final class Builder {
+        private static final boolean STRICT = true;
 
-        public Builder(final ImmutablePoint start,
-        final ImmutableLine initial) {
-            this.start = start;
-            this.lastLine = initial;
-            final boolean ccwOfLine = lastLine.relativeCCW(start) > 0;
-            Preconditions.checkArgument(!STRICT || !ccwOfLine);
-            lines.add(initial);
+        private final Point2D.Double buf = new Point2D.Double();
+
+        private final double[] coords;
+
+        /** The lines so far are coords[first ..] */
+        private int first;
+
+        /**
+         * @param gate
+         *            the gate of the group, i.e. the last line of the beam
+         * @param lines
+         *            the number of lines of the beam, one per level
+         */
+        public Builder(final ImmutableLine gate, final int lines) {
+            coords = new double[4 * lines];
+            first = coords.length - 4;
+            coords[first] = gate.p1.x;
+            coords[first + 1] = gate.p1.y;
+            coords[first + 2] = gate.p2.x;
+            coords[first + 3] = gate.p2.y;
         }
 
-        public void add(
-        final ImmutableLine next, final ImmutablePoint prevSource) {
-            final boolean ccwOfGate = next.relativeCCW(prevSource) > 0;
-            final boolean ccwOfParentGate =
-                lastLine.relativeCCW(prevSource) >= 0;
+        /**
+         * Follows the beam back to the mirror, and adds the part of the
+         * mirror that the beam comes through.
+         *
+         * @param prevSource
+         *            the source that sees the beam so far through the mirror
+         * @param mirror
+         *            the mirror that prevSource is mirrored at
+         */
+        public void throughMirror(final ImmutablePoint prevSource,
+        final ImmutableLine mirror) {
+            Preconditions.checkState(first > 0);
             /* This is crucial! */
-            Preconditions.checkArgument(!STRICT || !ccwOfGate);
-            Preconditions.checkArgument(!STRICT || ccwOfParentGate);
-            lines.add(next);
-            lastLine = next;
+            Preconditions.checkArgument(
+                !STRICT || relativeCCW(coords, first, prevSource) <= 0);
+            /* Must change order */
+            mirror.getIntersection(prevSource.x, prevSource.y,
+                coords[first + 2], coords[first + 3], buf);
+            coords[first - 4] = buf.x;
+            coords[first - 3] = buf.y;
+            mirror.getIntersection(prevSource.x, prevSource.y,
+                coords[first], coords[first + 1], buf);
+            coords[first - 2] = buf.x;
+            coords[first - 1] = buf.y;
+            first -= 4;
+            Preconditions.checkArgument(
+                !STRICT || relativeCCW(coords, first, prevSource) >= 0);
         }
 
-        public Beam build() {
-            return new Beam(start, lines.build());
+        /**
+         * @param start
+         *            the (real) source, which sees the first line
+         */
+        public Beam build(final ImmutablePoint start) {
+            Preconditions.checkState(0 == first);
+            Preconditions.checkArgument(
+                !STRICT || relativeCCW(coords, first, start) <= 0);
+            return new Beam(start, coords);
+        }
+
+        /**
+         * Same as ImmutableLine.relativeCCW on the line at coords[i], so
+         * also exact for fixed coordinates.
+         */
+        private static int relativeCCW(final double[] coords, final int i,
+        final ImmutablePoint p) {
+            if (FixedPoint.isFixed(coords[i], coords[i + 1])
+                && FixedPoint.isFixed(coords[i + 2], coords[i + 3])
+                && FixedPoint.isFixed(p.x, p.y)) {
+                return FixedPoint.relativeCCW((long) coords[i],
+                    (long) coords[i + 1], (long) coords[i + 2],
+                    (long) coords[i + 3], (long) p.x, (long) p.y);
+            }
+            return Line2D.relativeCCW(coords[i], coords[i + 1],
+                coords[i + 2], coords[i + 3], p.x, p.y);
         }
     }
 
@@ -95,9 +226,26 @@ public final class Beam {
 
         public final Path2D area;
 
-        private RenderedBeam(final Path2D outline, final Path2D area) {
+        /** Through the middle of each gate, for beams too thin to fill */
+        public final Path2D centerline;
+
+        /** Bounding box of area and outline */
+        public final Rectangle2D bounds;
+
+        /**
+         * The longest gate. The beam is a chain of quadrilaterals between
+         * the gates, so it's nowhere wider than this.
+         */
+        public final double maxWidth;
+
+        private RenderedBeam(final Path2D outline, final Path2D area,
+        final Path2D centerline, final Rectangle2D bounds,
+        final double maxWidth) {
             this.outline = outline;
             this.area = area;
+            this.centerline = centerline;
+            this.bounds = bounds;
+            this.maxWidth = maxWidth;
         }
     }
 }
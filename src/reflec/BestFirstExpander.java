@@ -0,0 +1,225 @@
+package reflec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+
+import reflec.Buffer.CancelStatus;
+import reflec.RayGroup.ReflectionResult;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Expands the reflection tree shortest-first instead of level by level.
+ *
+ * The travelled distance of a group is a lower bound for the length of every
+ * ray through it, and it never decreases from a group to its children. So
+ * when the next group in line can't beat the budget, or can't beat the k-th
+ * shortest ray found so far, nothing else can, and the search stops. This
+ * prunes whole subtrees that the level-wise expansion would have built.
+ *
+ * An expander only holds its limits, so it can be shared between threads.
+ */
+public final class BestFirstExpander {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final Comparator<Entry> BY_DISTANCE =
+        new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry o1, final Entry o2) {
+                final int res = Double.compare(
+                    o1.group.getTravelledDistance(),
+                    o2.group.getTravelledDistance());
+                if (0 != res) {
+                    return res;
+                }
+                /* Keep it deterministic */
+                return Long.compare(o1.sequence, o2.sequence);
+            }
+        };
+
+    private static final Comparator<Ray> BY_LENGTH = new Comparator<Ray>() {
+        @Override
+        public int compare(final Ray o1, final Ray o2) {
+            return Double.compare(o1.getLength(), o2.getLength());
+        }
+    };
+
+    private final double maxLength;
+
+    private final int maxRays;
+
+    private final int maxLevel;
+
+    private BestFirstExpander(final Builder b) {
+        maxLength = b.maxLength;
+        maxRays = b.maxRays;
+        maxLevel = b.maxLevel;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Finds the shortest rays from source to sink.
+     *
+     * @param model
+     *            the scene
+     * @return the rays found within the limits, shortest first, and how
+     *         much work that was
+     */
+    public Result search(final Model model) {
+        return search(model, CancelStatus.CONTINUE);
+    }
+
+    /**
+     * @throws CancellationException
+     *             soon after status is cancelled
+     */
+    public Result search(final Model model, final CancelStatus status) {
+        final PriorityQueue<Entry> queue =
+            new PriorityQueue<>(INITIAL_CAPACITY, BY_DISTANCE);
+        long sequence = 0;
+        if (0 <= maxLevel) {
+            queue.add(new Entry(new SourceRayGroup(model), sequence++));
+        }
+
+        /* Sorted by length, at most maxRays long */
+        final List<Ray> found = new ArrayList<>();
+        int expandedGroups = 0;
+        while (!queue.isEmpty()) {
+            final RayGroup group = queue.poll().group;
+            final double bound = group.getTravelledDistance();
+            if (bound > maxLength) {
+                break;
+            }
+            if (found.size() == maxRays
+                && bound >= found.get(found.size() - 1).getLength()) {
+                break;
+            }
+
+            final ReflectionResult result = group.doReflection(status);
+            ++expandedGroups;
+            final Ray ray = result.getFoundRay();
+            if (null != ray && ray.getLength() <= maxLength) {
+                insert(found, ray);
+            }
+            for (final RayGroup child : result.getGroups()) {
+                if (child.getReflectionLevel() <= maxLevel
+                    && child.getTravelledDistance() <= maxLength) {
+                    queue.add(new Entry(child, sequence++));
+                }
+            }
+        }
+        return new Result(ImmutableList.copyOf(found), expandedGroups);
+    }
+
+    private void insert(final List<Ray> found, final Ray ray) {
+        int pos = Collections.binarySearch(found, ray, BY_LENGTH);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        /* After all rays of the same length, so earlier ones win */
+        while (pos < found.size()
+            && found.get(pos).getLength() == ray.getLength()) {
+            ++pos;
+        }
+        if (pos < maxRays) {
+            found.add(pos, ray);
+            if (found.size() > maxRays) {
+                found.remove(found.size() - 1);
+            }
+        }
+    }
+
+    public static final class Result {
+        private final ImmutableList<Ray> rays;
+
+        private final int expandedGroups;
+
+        public Result(final ImmutableList<Ray> rays,
+        final int expandedGroups) {
+            this.rays = rays;
+            this.expandedGroups = expandedGroups;
+        }
+
+        /**
+         * @return the rays found within the limits, shortest first
+         */
+        public ImmutableList<Ray> getRays() {
+            return rays;
+        }
+
+        /**
+         * @return how many groups the search had to expand
+         */
+        public int getExpandedGroups() {
+            return expandedGroups;
+        }
+    }
+
+    private static final class Entry {
+        public final RayGroup group;
+
+        public final long sequence;
+
+        public Entry(final RayGroup group, final long sequence) {
+            this.group = group;
+            this.sequence = sequence;
+        }
+    }
+
+    public static final class Builder {
+        private double maxLength = Double.POSITIVE_INFINITY;
+
+        private int maxRays = Integer.MAX_VALUE;
+
+        private int maxLevel = Integer.MAX_VALUE;
+
+        public Builder() {
+            /* Nothing to do here */
+        }
+
+        /**
+         * Only look for rays up to this length.
+         */
+        public Builder setMaxLength(final double maxLength) {
+            Preconditions.checkArgument(maxLength >= 0);
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Stop as soon as the k shortest rays are known.
+         */
+        public Builder setMaxRays(final int maxRays) {
+            Preconditions.checkArgument(maxRays > 0);
+            this.maxRays = maxRays;
+            return this;
+        }
+
+        /**
+         * Don't expand groups beyond this reflection level, just like
+         * DefaultMutableModel's depth.
+         */
+        public Builder setMaxLevel(final int maxLevel) {
+            Preconditions.checkArgument(maxLevel >= -1);
+            this.maxLevel = maxLevel;
+            return this;
+        }
+
+        public BestFirstExpander build() {
+            /* Two parallel mirrors make for an infinite tree */
+            Preconditions.checkState(
+                maxLength < Double.POSITIVE_INFINITY
+                    || maxLevel < Integer.MAX_VALUE,
+                "Need a budget or a maximum level");
+            return new BestFirstExpander(this);
+        }
+    }
+}
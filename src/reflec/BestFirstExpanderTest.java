@@ -0,0 +1,57 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public final class BestFirstExpanderTest {
+    private static final Model DEFAULT_MODEL = Model.defaultModel();
+
+    private static final int DEPTH = 3;
+
+    public BestFirstExpanderTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testShortest() {
+        final List<Ray> all =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH).getRays();
+        double shortest = Double.POSITIVE_INFINITY;
+        for (final Ray ray : all) {
+            shortest = Math.min(shortest, ray.getLength());
+        }
+
+        final List<Ray> found = BestFirstExpander.builder()
+            .setMaxLevel(DEPTH).setMaxRays(1).build().search(DEFAULT_MODEL)
+            .getRays();
+        assertEquals(1, found.size());
+        assertEquals(shortest, found.get(0).getLength(), 0);
+        assertTrue(all.contains(found.get(0)));
+    }
+
+    @Test
+    public void testBudget() {
+        final List<Ray> all =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH).getRays();
+        final double budget = all.get(all.size() - 1).getLength();
+        int expected = 0;
+        for (final Ray ray : all) {
+            if (ray.getLength() <= budget) {
+                ++expected;
+            }
+        }
+
+        final List<Ray> found = BestFirstExpander.builder()
+            .setMaxLevel(DEPTH).setMaxLength(budget).build()
+            .search(DEFAULT_MODEL).getRays();
+        assertEquals(expected, found.size());
+        for (int i = 1; i < found.size(); ++i) {
+            assertTrue(found.get(i - 1).getLength()
+                <= found.get(i).getLength());
+        }
+    }
+}
@@ -12,6 +12,14 @@ public interface Buffer<I, O> {
     }
 
     public interface CancelStatus {
+        /** Never cancelled, for computations that have to run to the end */
+        CancelStatus CONTINUE = new CancelStatus() {
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
         boolean isCancelled();
     }
 
@@ -0,0 +1,135 @@
+package reflec;
+
+/**
+ * A small convex polygon, for Sutherland-Hodgman clipping against
+ * half-planes. All clipping is done with some margin, so rounding errors
+ * can only make the polygon a bit too large.
+ */
+final class ClipPolygon {
+    private static final int MAX_POINTS = 16;
+
+    private double[] xs = new double[MAX_POINTS];
+
+    private double[] ys = new double[MAX_POINTS];
+
+    private double[] bufX = new double[MAX_POINTS];
+
+    private double[] bufY = new double[MAX_POINTS];
+
+    private final double margin;
+
+    private int n;
+
+    public ClipPolygon(final double margin) {
+        this.margin = margin;
+    }
+
+    public ClipPolygon(final double margin, final double x0, final double y0,
+    final double x1, final double y1) {
+        this(margin);
+        n = 4;
+        xs[0] = x0;
+        ys[0] = y0;
+        xs[1] = x1;
+        ys[1] = y0;
+        xs[2] = x1;
+        ys[2] = y1;
+        xs[3] = x0;
+        ys[3] = y1;
+    }
+
+    public void set(final ClipPolygon that) {
+        n = that.n;
+        System.arraycopy(that.xs, 0, xs, 0, n);
+        System.arraycopy(that.ys, 0, ys, 0, n);
+    }
+
+    public boolean isEmpty() {
+        return 0 == n;
+    }
+
+    /**
+     * Keeps the part where .relativeCCW(a, b) is positive (if ccwSide) or
+     * negative (otherwise), plus some margin.
+     */
+    public void clip(final ImmutablePoint a, final ImmutablePoint b,
+    final boolean ccwSide) {
+        final double sign = ccwSide ? -1 : 1;
+        final double dx = b.x - a.x;
+        final double dy = b.y - a.y;
+        /* Same sign as Line2D.relativeCCW */
+        clip(sign * dy, -sign * dx,
+            sign * (a.x * dy - a.y * dx)
+                + margin * Math.hypot(dx, dy));
+    }
+
+    public void clipY(final double y, final boolean above) {
+        if (above) {
+            clip(0, -1, -y);
+        } else {
+            clip(0, 1, y);
+        }
+    }
+
+    /**
+     * Keeps the part where a * x + b * y <= c.
+     */
+    private void clip(final double a, final double b, final double c) {
+        int m = 0;
+        for (int i = 0; i < n; ++i) {
+            final int j = (i + 1) % n;
+            final double vi = a * xs[i] + b * ys[i] - c;
+            final double vj = a * xs[j] + b * ys[j] - c;
+            if (vi <= 0) {
+                bufX[m] = xs[i];
+                bufY[m] = ys[i];
+                ++m;
+            }
+            if ((vi <= 0) != (vj <= 0)) {
+                final double t = vi / (vi - vj);
+                bufX[m] = xs[i] + t * (xs[j] - xs[i]);
+                bufY[m] = ys[i] + t * (ys[j] - ys[i]);
+                ++m;
+            }
+        }
+        final double[] tmpX = xs;
+        final double[] tmpY = ys;
+        xs = bufX;
+        ys = bufY;
+        bufX = tmpX;
+        bufY = tmpY;
+        n = m;
+    }
+
+    public double minX() {
+        double ret = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            ret = Math.min(ret, xs[i]);
+        }
+        return ret - margin;
+    }
+
+    public double maxX() {
+        double ret = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            ret = Math.max(ret, xs[i]);
+        }
+        return ret + margin;
+    }
+
+    public double minY() {
+        double ret = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            ret = Math.min(ret, ys[i]);
+        }
+        return ret - margin;
+    }
+
+    public double maxY() {
+        double ret = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            ret = Math.max(ret, ys[i]);
+        }
+        return ret + margin;
+    }
+}
@@ -23,6 +23,8 @@ public final class CollectHelper {
     private final ImmutableList.Builder<RayGroup> builder =
         ImmutableList.builder();
 
+    private final Visibility.Builder visibility;
+
     private ImmutableLine active;
 
     private ImmutablePoint activeStart;
@@ -40,14 +42,17 @@ public final class CollectHelper {
         this.parent = parent;
         this.iter = iter;
         this.source = source;
+        this.visibility = new Visibility.Builder(parent, source);
 
         updateActive(start);
         onCcwOfActive = null == active || onCcwSideOfActive(source);
+        visibility.record(start, active, onCcwOfActive);
     }
 
     public void start() {
         Preconditions.checkState(state == State.INITIALIZING);
         state = State.STARTED;
+        visibility.start();
     }
 
     public boolean isVisible(final SweepEvent ev) {
@@ -73,8 +78,7 @@ public final class CollectHelper {
                  */
 
                 final boolean acmBeforeEl =
-                    (ev.l.relativeCCW(active.mid) >= 0)
-                    == (ev.l.relativeCCW(source) >= 0);
+                    ev.l.sameCcwSide(active.mid, source);
                 final boolean elmBeforeActive =
                     onCcwSideOfActive(ev.l.mid) == onCcwOfActive;
                 if (acmBeforeEl != elmBeforeActive) {
@@ -144,6 +148,7 @@ public final class CollectHelper {
         Preconditions.checkState(state != State.BUILT);
         if (ev.l == active) {
             /* Merge */
+            visibility.advance(ev.p);
             return;
         }
         if (State.STARTED == state && null != active) {
@@ -152,12 +157,13 @@ public final class CollectHelper {
         activeStart = ev.p;
         active = ev.l;
         onCcwOfActive = null == active || onCcwSideOfActive(source);
+        visibility.record(ev.p, active, onCcwOfActive);
     }
 
     public void endSegment(final ImmutablePoint p) {
         Preconditions.checkState(state != State.BUILT);
         /*
-         * Note: Since computeNearest() can return null "unexpectedly", .active
+         * Note: Since getNearest() can return null "unexpectedly", .active
          * might be null in corner cases (e.g. mirror running exactly through
          * the source). That's why the check.
          */
@@ -166,11 +172,12 @@ public final class CollectHelper {
         }
         updateActive(p);
         onCcwOfActive = null == active || onCcwSideOfActive(source);
+        visibility.record(p, active, onCcwOfActive);
     }
 
     private void updateActive(final ImmutablePoint p) {
         Preconditions.checkNotNull(p);
-        active = source.computeNearest(p, iter.getOpenSet());
+        active = iter.getNearest();
         if (null == active) {
             activeStart = null;
         } else {
@@ -191,7 +198,8 @@ public final class CollectHelper {
     public ReflectionResult build() {
         Preconditions.checkState(state != State.BUILT);
         state = State.BUILT;
-        return new ReflectionResult(builder.build(), pathFound);
+        return new ReflectionResult(
+            builder.build(), pathFound, visibility.build());
     }
 
     private static enum State {
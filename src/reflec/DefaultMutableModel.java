@@ -2,79 +2,160 @@ package reflec;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
-import java.util.Deque;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
-import reflec.RayGroup.ReflectionResult;
+import reflec.Buffer.CancelStatus;
+import reflec.Buffer.Function;
+import reflec.Buffer.OutputListener;
+import reflec.LevelExpander.Level;
 
 import com.google.common.collect.ImmutableList;
 
+/**
+ * Keeps the reflection tree of a Model up to date.
+ *
+ * The actual computation is done by a Buffer: With PhonyBuffer.FACTORY (the
+ * default) every change is computed right away, with
+ * EDTBuffer.CANCELLING_FACTORY it's done in the background, only the latest
+ * input is computed, and stale computations are cancelled. Either way, the
+ * results are published as immutable Snapshots, and listeners are notified on
+ * the thread the Buffer delivers on.
+ *
+ * With a preview depth, a new model is first computed only up to that depth,
+ * and then refined one level at a time, publishing each level. Any newer
+ * input replaces the refinement, so while dragging there's always a shallow
+ * result quickly, and the deep one fills in as soon as there's time.
+ *
+ * With a maximum length or number of rays, the tree is searched shortest
+ * first by a BestFirstExpander instead, which only expands what can still
+ * beat the limits. That search is neither previewed nor reused.
+ */
 public final class DefaultMutableModel implements MutableModel {
-    private static final int DEFAULT_DEPTH = -1;
+    public static final int DEFAULT_DEPTH = -1;
+
+    /** Preview depth that means "no preview, compute everything at once" */
+    public static final int NO_PREVIEW = Integer.MAX_VALUE;
 
     private final List<ModelListener> panels = new LinkedList<>();
 
+    private final Buffer<Request, Snapshot> buffer;
+
+    /** The newest model, which may not have been computed yet */
     private Model model;
 
-    private ImmutableList<RayGroup> groups;
+    private int depth;
 
-    private ImmutableList<Ray> rays;
+    private LevelExpander expander = LevelExpander.SEQUENTIAL;
 
-    private int depth;
+    private int previewDepth = NO_PREVIEW;
+
+    private double maxLength = Double.POSITIVE_INFINITY;
+
+    private int maxRays = Integer.MAX_VALUE;
+
+    /**
+     * The newest result. Computations start from it (see Snapshot#compute),
+     * which may happen on another thread.
+     */
+    private volatile Snapshot snapshot;
 
     public DefaultMutableModel(final Model model) {
         this(model, DEFAULT_DEPTH);
     }
 
     public DefaultMutableModel(final Model model, final int depth) {
+        this(model, depth, PhonyBuffer.FACTORY);
+    }
+
+    public DefaultMutableModel(final Model model, final int depth,
+    final Buffer.Factory bufFactory) {
+        checkArgument(depth >= -1);
         this.depth = depth;
-        this.model = model;
-        doUpdate();
+        this.model = checkNotNull(model);
+        /* Never null, even if the first computation fails */
+        final Snapshot empty = Snapshot.empty(model, depth);
+        this.snapshot = empty;
+        final ComputeHandler handler = new ComputeHandler();
+        this.buffer = bufFactory.create(handler, handler, request(depth),
+            empty);
     }
 
+    /**
+     * @return the newest model, which is not necessarily the one the groups
+     *         and rays belong to (see getSnapshot())
+     */
     @Override
     public Model getModel() {
         return model;
     }
 
-    private void doUpdate() {
-        this.model = checkNotNull(model);
-
-        try {
-            final ImmutableList.Builder<Ray> raysBuilder =
-                ImmutableList.builder();
-
-            final Deque<RayGroup> pending = new LinkedList<>();
-            pending.add(new SourceRayGroup(model));
-
-            while (!pending.isEmpty()
-                && pending.getFirst().getReflectionLevel() <= depth) {
-                final RayGroup g = pending.remove();
+    /**
+     * @return the newest completed result
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
 
-                final ReflectionResult result = g.doReflection();
+    /**
+     * Determines the rays from the source to each of the given receivers,
+     * just as if each of them was the sink, up to the current depth. This
+     * reuses the reflection tree, so it's much cheaper than one update per
+     * receiver.
+     *
+     * @param receivers
+     *            the points of interest
+     * @return for each receiver, the rays reaching it, level by level and
+     *         in the order of the current groups. For the current sink, that's
+     *         exactly getRays(), but a fresh computation with the receiver as
+     *         the sink may order them differently (see Snapshot.compute()).
+     * @throws IllegalStateException
+     *             if the rays were searched within a maximum length or number
+     *             of rays, because then there's no tree to reuse
+     */
+    public ImmutableList<ImmutableList<Ray>> getRaysTo(
+    final List<ImmutablePoint> receivers) {
+        final Snapshot snap = snapshot;
+        checkState(!snap.searched, "No reflection tree with a ray limit");
+        final ReceiverIndex index = new ReceiverIndex(receivers);
+        final List<ImmutableList.Builder<Ray>> found =
+            new ArrayList<>(receivers.size());
+        for (int i = 0; i < receivers.size(); ++i) {
+            found.add(ImmutableList.<Ray> builder());
+        }
 
-                final Ray ray = result.getFoundRay();
-                if (null != ray) {
-                    raysBuilder.add(ray);
+        for (int level = 0; level <= snap.depth
+            && level < snap.levelVisibilities.size(); ++level) {
+            for (final Visibility visibility : snap.levelVisibilities
+                .get(level)) {
+                for (final int id : index.inWedge(
+                    visibility.getCenter(), visibility.getGate())) {
+                    final Ray ray = visibility.rayTo(index.get(id));
+                    if (null != ray) {
+                        found.get(id).add(ray);
+                    }
                 }
-                pending.addAll(result.getGroups());
             }
+        }
 
-            groups = ImmutableList.copyOf(pending);
-            rays = raysBuilder.build();
-
-            fireModelChanged();
-        } catch (final RuntimeException e) {
-            System.err.println("Couldn't update: " + e.toString());
+        final ImmutableList.Builder<ImmutableList<Ray>> ret =
+            ImmutableList.builder();
+        for (final ImmutableList.Builder<Ray> rays : found) {
+            ret.add(rays.build());
         }
+        return ret.build();
     }
 
     public void setModel(final Model model) {
         if (model != this.model) {
             this.model = checkNotNull(model);
-            doUpdate();
+            buffer.adjust(request(isLimited(maxLength, maxRays)
+                ? depth
+                : Math.min(depth, previewDepth)), false);
         }
     }
 
@@ -82,40 +163,109 @@ public final class DefaultMutableModel implements MutableModel {
         if (depth != this.depth) {
             checkArgument(depth >= -1);
             this.depth = depth;
-            doUpdate();
+            update();
         }
     }
 
+    private void update() {
+        buffer.adjust(request(depth), false);
+    }
+
+    private Request request(final int requestDepth) {
+        return new Request(model, requestDepth, expander, maxLength,
+            maxRays);
+    }
+
     public int getDepth() {
         return depth;
     }
 
-    // public void set(final Model model, final ImmutableList<RayGroup> groups,
-    // final ImmutableList<Ray> rays) {
-    // this.model = checkNotNull(model);
-    // this.groups = checkNotNull(groups);
-    // this.rays = checkNotNull(rays);
-    // fireModelChanged();
-    // }
-    //
-    // public void update(final Model model, final ImmutableList<RayGroup>
-    // groups,
-    // final ImmutableList<Ray> rays) {
-    // checkArgument(null != model || null != groups || null != rays);
-    // this.model = Objects.firstNonNull(model, this.model);
-    // this.groups = Objects.firstNonNull(groups, this.groups);
-    // this.rays = Objects.firstNonNull(rays, this.rays);
-    // fireModelChanged();
-    // }
+    /**
+     * Sets up to which depth a new model is computed first, before refining
+     * level by level. NO_PREVIEW computes all of it at once.
+     */
+    public void setPreviewDepth(final int previewDepth) {
+        checkArgument(previewDepth >= -1);
+        this.previewDepth = previewDepth;
+    }
+
+    public int getPreviewDepth() {
+        return previewDepth;
+    }
+
+    /**
+     * Continues where the given result left off, if it's still the newest
+     * model and not deep enough yet.
+     */
+    private void refine(final Snapshot result) {
+        if (result.model == model && result.depth < depth) {
+            buffer.adjust(request(result.depth + 1), false);
+        }
+    }
+
+    /**
+     * Sets whether the levels of the reflection tree are expanded on all
+     * cores. This doesn't change the result, so there's no update.
+     */
+    public void setParallel(final boolean parallel) {
+        if (parallel != expander.isParallel()) {
+            expander = parallel
+                ? LevelExpander.parallel()
+                : LevelExpander.SEQUENTIAL;
+        }
+    }
+
+    public boolean isParallel() {
+        return expander.isParallel();
+    }
+
+    /**
+     * Only looks for rays up to this length, shortest first, instead of
+     * expanding all levels up to the depth. Then there are no groups, and
+     * the search isn't parallel.
+     */
+    public void setMaxLength(final double maxLength) {
+        if (maxLength != this.maxLength) {
+            checkArgument(maxLength >= 0);
+            this.maxLength = maxLength;
+            update();
+        }
+    }
+
+    public double getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Only looks for the given number of shortest rays, see setMaxLength().
+     * Integer.MAX_VALUE means no limit.
+     */
+    public void setMaxRays(final int maxRays) {
+        if (maxRays != this.maxRays) {
+            checkArgument(maxRays > 0);
+            this.maxRays = maxRays;
+            update();
+        }
+    }
+
+    public int getMaxRays() {
+        return maxRays;
+    }
+
+    private static boolean isLimited(final double maxLength,
+    final int maxRays) {
+        return maxLength < Double.POSITIVE_INFINITY
+            || maxRays < Integer.MAX_VALUE;
+    }
 
     @Override
     public ImmutableList<RayGroup> getGroups() {
-        return groups;
+        return snapshot.groups;
     }
 
     @Override
     public ImmutableList<Ray> getRays() {
-        return rays;
+        return snapshot.rays;
     }
 
     public boolean add(final ModelListener e) {
@@ -127,4 +277,251 @@ public final class DefaultMutableModel implements MutableModel {
             panel.notifyModelChanged(false);
         }
     }
+
+    private final class ComputeHandler
+    implements Function<Request, Snapshot>, OutputListener<Snapshot> {
+        public ComputeHandler() {
+            /* Nothing to do here */
+        }
+
+        @Override
+        public Snapshot apply(final Request in, final CancelStatus status) {
+            try {
+                return Snapshot.compute(in, snapshot, status);
+            } catch (final CancellationException e) {
+                /* Nobody wants it anymore */
+                return null;
+            } catch (final RuntimeException e) {
+                System.err.println("Couldn't update: " + e.toString());
+                return null;
+            }
+        }
+
+        @Override
+        public void update(final Snapshot result) {
+            if (null == result) {
+                /* Cancelled or failed, so keep showing the old one */
+                return;
+            }
+            snapshot = result;
+            fireModelChanged();
+            refine(result);
+        }
+    }
+
+    private static final class Request {
+        public final Model model;
+
+        public final int depth;
+
+        public final LevelExpander expander;
+
+        public final double maxLength;
+
+        public final int maxRays;
+
+        public Request(final Model model, final int depth,
+        final LevelExpander expander, final double maxLength,
+        final int maxRays) {
+            this.model = model;
+            this.depth = depth;
+            this.expander = expander;
+            this.maxLength = maxLength;
+            this.maxRays = maxRays;
+        }
+
+        public boolean isLimited() {
+            return DefaultMutableModel.isLimited(maxLength, maxRays);
+        }
+    }
+
+    /**
+     * The reflection tree of one model, as far as it has been expanded, and
+     * the groups and rays for one depth. Immutable, so it can be handed
+     * between threads, and the next Snapshot can share all levels that are
+     * still valid.
+     */
+    public static final class Snapshot {
+        private final Model model;
+
+        /** The model the groups were built with. Only the sink may differ. */
+        private final Model treeModel;
+
+        private final int depth;
+
+        /** levels.get(k) contains the groups of reflection level k. */
+        private final ImmutableList<ImmutableList<RayGroup>> levels;
+
+        /** levelRays.get(k) contains the rays found by expanding level k. */
+        private final ImmutableList<ImmutableList<Ray>> levelRays;
+
+        /**
+         * levelVisibilities.get(k) contains what the groups of level k could
+         * see, so the rays can be recomputed when only the sink moves.
+         */
+        private final ImmutableList<ImmutableList<Visibility>>
+            levelVisibilities;
+
+        private final ImmutableList<RayGroup> groups;
+
+        private final ImmutableList<Ray> rays;
+
+        /** Whether the rays were searched, without keeping the tree */
+        private final boolean searched;
+
+        private Snapshot(final Model model, final Model treeModel,
+        final int depth, final List<ImmutableList<RayGroup>> levels,
+        final List<ImmutableList<Ray>> levelRays,
+        final List<ImmutableList<Visibility>> levelVisibilities) {
+            this.model = model;
+            this.treeModel = treeModel;
+            this.depth = depth;
+            this.levels = ImmutableList.copyOf(levels);
+            this.levelRays = ImmutableList.copyOf(levelRays);
+            this.levelVisibilities = ImmutableList.copyOf(levelVisibilities);
+
+            if (depth + 1 < levels.size()) {
+                groups = levels.get(depth + 1);
+            } else {
+                groups = ImmutableList.of();
+            }
+            final ImmutableList.Builder<Ray> raysBuilder =
+                ImmutableList.builder();
+            for (int level = 0;
+                level <= depth && level < levelRays.size(); ++level) {
+                raysBuilder.addAll(levelRays.get(level));
+            }
+            rays = raysBuilder.build();
+            searched = false;
+        }
+
+        private Snapshot(final Model model, final int depth,
+        final ImmutableList<Ray> rays) {
+            this.model = model;
+            this.treeModel = model;
+            this.depth = depth;
+            this.levels = ImmutableList.of();
+            this.levelRays = ImmutableList.of();
+            this.levelVisibilities = ImmutableList.of();
+            this.groups = ImmutableList.of();
+            this.rays = rays;
+            this.searched = true;
+        }
+
+        static Snapshot empty(final Model model, final int depth) {
+            final List<ImmutableList<RayGroup>> levels = new ArrayList<>();
+            return new Snapshot(model, model, depth, levels,
+                new ArrayList<ImmutableList<Ray>>(),
+                new ArrayList<ImmutableList<Visibility>>());
+        }
+
+        /**
+         * Computes the Snapshot for the given request, reusing as much of
+         * base as possible: all levels if only the depth changed, and all
+         * groups if only the sink moved, because the groups and what they
+         * can see don't depend on the sink.
+         *
+         * Their order does, though: the sweep around the source starts at
+         * its first event, which may be the sink. So after moving only the
+         * sink, the groups and rays are the same as when computing from
+         * scratch, but they may come in another order. Don't rely on it.
+         *
+         * With a ray limit, the rays are searched from scratch instead, and
+         * come shortest first.
+         *
+         * @return the result, or null if cancelled
+         * @throws CancellationException
+         *             if cancelled while expanding a level or searching
+         */
+        static Snapshot compute(final Request in, final Snapshot base,
+        final CancelStatus status) {
+            final Model model = in.model;
+            if (in.isLimited()) {
+                final BestFirstExpander search = BestFirstExpander.builder()
+                    .setMaxLevel(in.depth).setMaxLength(in.maxLength)
+                    .setMaxRays(in.maxRays).build();
+                return new Snapshot(model, in.depth,
+                    search.search(model, status).getRays());
+            }
+            final List<ImmutableList<RayGroup>> levels = new ArrayList<>();
+            final List<ImmutableList<Ray>> levelRays = new ArrayList<>();
+            final List<ImmutableList<Visibility>> levelVisibilities =
+                new ArrayList<>();
+            final Model treeModel;
+
+            if (null != base && !base.levels.isEmpty()
+                && base.treeModel.getSegments() == model.getSegments()
+                && base.treeModel.getSource().equals(model.getSource())) {
+                treeModel = base.treeModel;
+                levels.addAll(base.levels);
+                levelVisibilities.addAll(base.levelVisibilities);
+                if (base.model.getSink() == model.getSink()) {
+                    levelRays.addAll(base.levelRays);
+                } else {
+                    for (final ImmutableList<Visibility> visibilities
+                        : levelVisibilities) {
+                        levelRays.add(raysTo(visibilities, model.getSink()));
+                    }
+                }
+            } else {
+                treeModel = model;
+                levels.add(ImmutableList.<RayGroup> of(
+                    new SourceRayGroup(model)));
+            }
+
+            /* Expand level by level, so each level can be done in parallel */
+            while (levelRays.size() <= in.depth) {
+                if (status.isCancelled()) {
+                    return null;
+                }
+                final ImmutableList<RayGroup> last =
+                    levels.get(levels.size() - 1);
+                if (last.isEmpty()) {
+                    /* All further levels are empty, too */
+                    break;
+                }
+                final Level next = in.expander.expand(last, status);
+                levels.add(next.getGroups());
+                levelVisibilities.add(next.getVisibilities());
+                if (treeModel.getSink() == model.getSink()) {
+                    levelRays.add(next.getRays());
+                } else {
+                    /* The groups were built for another sink */
+                    levelRays.add(
+                        raysTo(next.getVisibilities(), model.getSink()));
+                }
+            }
+
+            return new Snapshot(model, treeModel, in.depth, levels,
+                levelRays, levelVisibilities);
+        }
+
+        private static ImmutableList<Ray> raysTo(
+        final List<Visibility> visibilities, final ImmutablePoint sink) {
+            final ImmutableList.Builder<Ray> found = ImmutableList.builder();
+            for (final Visibility visibility : visibilities) {
+                final Ray ray = visibility.rayTo(sink);
+                if (null != ray) {
+                    found.add(ray);
+                }
+            }
+            return found.build();
+        }
+
+        public Model getModel() {
+            return model;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public ImmutableList<RayGroup> getGroups() {
+            return groups;
+        }
+
+        public ImmutableList<Ray> getRays() {
+            return rays;
+        }
+    }
 }
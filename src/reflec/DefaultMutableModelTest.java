@@ -0,0 +1,149 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import reflec.Buffer.CancelStatus;
+import reflec.Buffer.Function;
+import reflec.Buffer.OutputListener;
+import reflec.MutableModel.ModelListener;
+
+import com.google.common.collect.HashMultiset;
+
+public final class DefaultMutableModelTest {
+    private static final Model DEFAULT_MODEL = Model.defaultModel();
+
+    private static final int DEPTH = 4;
+
+    private static final int RECEIVERS = 5;
+
+    public DefaultMutableModelTest() {
+        /* Nothing to do here */
+    }
+
+    /**
+     * Moving only the sink reuses the groups, see Snapshot.compute(). The rays
+     * are the same as from scratch, but maybe in another order.
+     */
+    @Test
+    public void testSinkMove() {
+        final DefaultMutableModel mutModel =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH);
+        final Model moved = DEFAULT_MODEL.withEndpoints(
+            DEFAULT_MODEL.getSource(), DEFAULT_MODEL.getMirrors().iterator()
+                .next().mid);
+        mutModel.setModel(moved);
+
+        final List<Ray> expected =
+            new DefaultMutableModel(moved, DEPTH).getRays();
+        assertEquals(HashMultiset.create(expected),
+            HashMultiset.create(mutModel.getRays()));
+    }
+
+    @Test
+    public void testRaysTo() {
+        final DefaultMutableModel mutModel =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH);
+        assertEquals(mutModel.getRays(), mutModel.getRaysTo(
+            Collections.singletonList(DEFAULT_MODEL.getSink())).get(0));
+
+        final Rectangle2D bounds =
+            new MirrorIndex(DEFAULT_MODEL.getSegments()).getBounds();
+        final Random r = new Random(42);
+        final List<ImmutablePoint> receivers = new ArrayList<>();
+        for (int i = 0; i < RECEIVERS; ++i) {
+            receivers.add(new ImmutablePoint(
+                bounds.getX() + r.nextDouble() * bounds.getWidth(),
+                bounds.getY() + r.nextDouble() * bounds.getHeight()));
+        }
+        final List<? extends List<Ray>> found = mutModel.getRaysTo(receivers);
+        for (int i = 0; i < RECEIVERS; ++i) {
+            final Model moved = DEFAULT_MODEL.withEndpoints(
+                DEFAULT_MODEL.getSource(), receivers.get(i));
+            final List<Ray> expected =
+                new DefaultMutableModel(moved, DEPTH).getRays();
+            assertEquals(HashMultiset.create(expected),
+                HashMultiset.create(found.get(i)));
+        }
+    }
+
+    @Test
+    public void testRayLimit() {
+        final DefaultMutableModel mutModel =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH);
+        final List<Ray> all = mutModel.getRays();
+        mutModel.setMaxRays(2);
+
+        assertEquals(BestFirstExpander.builder().setMaxLevel(DEPTH)
+            .setMaxRays(2).build().search(DEFAULT_MODEL).getRays(),
+            mutModel.getRays());
+        assertTrue(mutModel.getGroups().isEmpty());
+
+        /* Back to the whole tree */
+        mutModel.setMaxRays(Integer.MAX_VALUE);
+        assertEquals(all, mutModel.getRays());
+    }
+
+    @Test
+    public void testFailedFirstComputation() {
+        /* Every computation fails, just as a RuntimeException would */
+        final Buffer.Factory failing = new Buffer.Factory() {
+            @Override
+            public <I, O> Buffer<I, O> create(final Function<I, O> function,
+            final OutputListener<O> listener, final I initialInput,
+            final O nullOutput) {
+                return PhonyBuffer.FACTORY.create(new Function<I, O>() {
+                    @Override
+                    public O apply(final I in, final CancelStatus status) {
+                        return null;
+                    }
+                }, listener, initialInput, nullOutput);
+            }
+        };
+        final DefaultMutableModel mutModel =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH, failing);
+
+        assertTrue(mutModel.getRays().isEmpty());
+        assertTrue(mutModel.getGroups().isEmpty());
+    }
+
+    @Test
+    public void testPreview() {
+        final DefaultMutableModel mutModel =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH);
+        mutModel.setPreviewDepth(1);
+        final List<Integer> published = new ArrayList<>();
+        mutModel.add(new ModelListener() {
+            @Override
+            public void notifyModelChanged(final boolean coreModelChanged) {
+                published.add(
+                    Integer.valueOf(mutModel.getSnapshot().getDepth()));
+            }
+        });
+
+        final Model moved = DEFAULT_MODEL.withEndpoints(
+            new ImmutablePoint(DEFAULT_MODEL.getSource().x + 1,
+                DEFAULT_MODEL.getSource().y),
+            DEFAULT_MODEL.getSink());
+        mutModel.setModel(moved);
+
+        /* One level at a time */
+        final List<Integer> expected = new ArrayList<>();
+        for (int depth = 1; depth <= DEPTH; ++depth) {
+            expected.add(Integer.valueOf(depth));
+        }
+        assertEquals(expected, published);
+        assertEquals(new DefaultMutableModel(moved, DEPTH).getRays(),
+            mutModel.getRays());
+        assertEquals(new DefaultMutableModel(moved, DEPTH).getGroups().size(),
+            mutModel.getGroups().size());
+    }
+}
@@ -0,0 +1,140 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import reflec.PainterFactory.Painter;
+
+import com.google.common.collect.ImmutableList;
+
+public final class DefaultPainterTest {
+    private static final int WIDTH = 300;
+
+    private static final int HEIGHT = 400;
+
+    private static final int RAYS = 200;
+
+    private static final int BLACK = 0xFF000000;
+
+    /** See DefaultPainter.RAY_PALETTE_SIZE */
+    private static final int PALETTE_SIZE = 16;
+
+    public DefaultPainterTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testNoBatchingWithAntialiasing() {
+        final DefaultMutableModel model =
+            new DefaultMutableModel(Model.defaultModel(), 3);
+        final BufferedImage expected = paint(model.getModel(),
+            model.getGroups(), model.getRays(), false, true);
+        final BufferedImage actual = paint(model.getModel(),
+            model.getGroups(), model.getRays(), true, true);
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedRays() {
+        final Model model = Model.defaultModel();
+        final List<Ray> rays = randomRays(model);
+        final List<RayGroup> noGroups = ImmutableList.of();
+        final BufferedImage expected =
+            paint(model, noGroups, rays, false, false);
+        final BufferedImage actual = paint(model, noGroups, rays, true, false);
+
+        /*
+         * Roughly the same pixels (paths and single lines are rounded a bit
+         * differently), but in only a few colours
+         */
+        final Set<Integer> expectedCols = new HashSet<>();
+        final Set<Integer> actualCols = new HashSet<>();
+        int expectedPainted = 0;
+        int actualPainted = 0;
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                expectedCols.add(expected.getRGB(x, y));
+                actualCols.add(actual.getRGB(x, y));
+                if (BLACK != expected.getRGB(x, y)) {
+                    ++expectedPainted;
+                }
+                if (BLACK != actual.getRGB(x, y)) {
+                    ++actualPainted;
+                }
+            }
+        }
+        assertEquals(expectedPainted, actualPainted, expectedPainted / 10);
+        assertTrue(expectedCols.size() > RAYS / 2);
+        /* Plus the background */
+        assertTrue(actualCols.size() <= PALETTE_SIZE + 1);
+    }
+
+    /**
+     * @return rays from the source to the sink, via two random points among
+     *         the mirrors
+     */
+    private static List<Ray> randomRays(final Model m) {
+        final Rectangle2D bounds =
+            new MirrorIndex(m.getSegments()).getBounds();
+        final Random r = new Random(42);
+        final ImmutableList.Builder<Ray> ret = ImmutableList.builder();
+        for (int i = 0; i < RAYS; ++i) {
+            final Ray.Builder b =
+                Ray.builder(m.getSource(), randomPoint(bounds, r));
+            b.add(randomPoint(bounds, r));
+            b.add(m.getSink());
+            ret.add(b.build());
+        }
+        return ret.build();
+    }
+
+    private static ImmutablePoint randomPoint(final Rectangle2D bounds,
+    final Random r) {
+        return new ImmutablePoint(
+            bounds.getX() + r.nextDouble() * bounds.getWidth(),
+            bounds.getY() + r.nextDouble() * bounds.getHeight());
+    }
+
+    private static BufferedImage paint(final Model model,
+    final List<RayGroup> groups, final List<Ray> rays,
+    final boolean batching, final boolean antialiased) {
+        final PaintConfig config =
+            PaintConfig.builder(model).buildFor(WIDTH, HEIGHT);
+        final DefaultPainter.Factory fac = new DefaultPainter.Factory();
+        fac.setPaintingBeams(true);
+        fac.setBatching(batching);
+
+        final BufferedImage img =
+            new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+            antialiased
+                ? RenderingHints.VALUE_ANTIALIAS_ON
+                : RenderingHints.VALUE_ANTIALIAS_OFF);
+        final Painter p = fac.start(config, g);
+        for (final RayGroup gr : groups) {
+            p.drawGroup(gr);
+        }
+        for (final Ray r : rays) {
+            p.drawRay(r);
+        }
+        p.dispose();
+        g.dispose();
+        return img;
+    }
+}
@@ -2,6 +2,7 @@ package reflec;
 
 import java.awt.BorderLayout;
 import java.awt.EventQueue;
+import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
@@ -32,10 +33,26 @@ public final class DisplayFrame extends JFrame {
         } catch (final IOException e) {
             throw new RuntimeException(e);
         }
-        mutModel = new DefaultMutableModel(model);
+        /*
+         * Dragging must not block the EDT, even at high depths. Computing and
+         * painting get a thread each, so they don't wait behind each other
+         * or other SwingWorkers.
+         */
+        mutModel = new DefaultMutableModel(model,
+            DefaultMutableModel.DEFAULT_DEPTH, EDTBuffer.factory(
+                EDTBuffer.newSingleThreadExecutor("reflec-model",
+                    Thread.NORM_PRIORITY), true, null));
+        mutModel.setParallel(true);
+        /* While dragging, show something right away and refine later */
+        mutModel.setPreviewDepth(1);
         factory = new DefaultPainter.Factory();
-        final DisplayPanel panel = new DisplayPanel(
-            factory, PhonyBuffer.FACTORY, mutModel);
+        /* Only takes effect without antialiasing */
+        factory.setBatching(true);
+        final DisplayPanel panel = new DisplayPanel(factory,
+            EDTBuffer.factory(EDTBuffer.newSingleThreadExecutor(
+                "reflec-paint", Thread.NORM_PRIORITY), true, null),
+            mutModel);
+        panel.setParallel(true);
         mutModel.add(panel);
 //        CursorMarker.hookInto(panel);
         MouseInteractivity.hookInto(mutModel, panel);
@@ -55,9 +72,23 @@ public final class DisplayFrame extends JFrame {
             }
         });
         
+        final JCheckBox aaBox = new JCheckBox("Antialiasing");
+        aaBox.setSelected(panel.isAntialiased());
+        aaBox.setFocusPainted(false);
+        aaBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                panel.setAntialiased(aaBox.isSelected());
+            }
+        });
+
+        final JPanel options = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        options.add(chkBox);
+        options.add(aaBox);
+
         final JPanel content = new JPanel(new BorderLayout(0, 0));
         content.add(panel);
-        content.add(chkBox, BorderLayout.SOUTH);
+        content.add(options, BorderLayout.SOUTH);
         
         setTitle("Reflections v0.5");
         setContentPane(content);
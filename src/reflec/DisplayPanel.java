@@ -17,6 +17,7 @@ import reflec.Buffer.Function;
 import reflec.Buffer.OutputListener;
 import reflec.MutableModel.ModelListener;
 import reflec.PainterFactory.Painter;
+import reflec.TiledRenderer.Scene;
 
 import com.google.common.collect.ImmutableList;
 
@@ -31,6 +32,9 @@ implements ModelListener {
     private static final DisplayState EMPTY =
         new DisplayState(EMPTY_IMG, PaintConfig.CLIP_NONE);
 
+    /** Check the CancelStatus every that many groups or rays */
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+
     private final Buffer<DisplayDescription, DisplayState> buffer;
 
     private final PainterFactory fac;
@@ -41,6 +45,9 @@ implements ModelListener {
 
     private DisplayState lastState;
 
+    /** Read by the Buffer's worker */
+    private volatile TiledRenderer renderer = TiledRenderer.SEQUENTIAL;
+
     public DisplayPanel(final PainterFactory fac,
     final Buffer.Factory bufFactory, final MutableModel model) {
         this.fac = Objects.requireNonNull(fac);
@@ -94,6 +101,37 @@ implements ModelListener {
         buffer.adjust(describe(), hardReset);
     }
 
+    /**
+     * Sets whether the image is painted in bands on all cores. This doesn't
+     * change the result, so there's no update.
+     */
+    public void setParallel(final boolean parallel) {
+        if (parallel != renderer.isParallel()) {
+            renderer = (parallel
+                ? TiledRenderer.parallel()
+                : TiledRenderer.SEQUENTIAL).antialiased(isAntialiased());
+        }
+    }
+
+    public boolean isParallel() {
+        return renderer.isParallel();
+    }
+
+    /**
+     * Sets whether the image is antialiased. Without, painting is much
+     * faster, see DefaultPainter.
+     */
+    public void setAntialiased(final boolean antialiased) {
+        if (antialiased != renderer.isAntialiased()) {
+            renderer = renderer.antialiased(antialiased);
+            notifyModelChanged(false);
+        }
+    }
+
+    public boolean isAntialiased() {
+        return renderer.isAntialiased();
+    }
+
     public PaintConfig getLastConfig() {
         return lastState.config;
     }
@@ -173,54 +211,144 @@ implements ModelListener {
         }
     }
 
+    /**
+     * The mirrors, painted once for one PaintConfig. Dragging the source or
+     * sink, or changing the depth, only changes what's painted on top.
+     */
+    private static final class StaticLayer {
+        public final SegmentTable mirrors;
+
+        public final PaintConfig config;
+
+        public final boolean antialiased;
+
+        public final BufferedImage img;
+
+        public StaticLayer(final SegmentTable mirrors,
+        final PaintConfig config, final boolean antialiased,
+        final BufferedImage img) {
+            this.mirrors = mirrors;
+            this.config = config;
+            this.antialiased = antialiased;
+            this.img = img;
+        }
+
+        public boolean isFor(final SegmentTable otherMirrors,
+        final PaintConfig otherConfig, final boolean otherAntialiased) {
+            return mirrors == otherMirrors && config.equals(otherConfig)
+                && antialiased == otherAntialiased;
+        }
+    }
+
     private final class BufferHandler implements
     OutputListener<DisplayState>, Function<DisplayDescription, DisplayState> {
+        /** May be read and written by different worker threads */
+        private volatile StaticLayer staticLayer;
+
         public BufferHandler() {
             /* Nothing to do here */
         }
 
         @Override
         public void update(final DisplayState result) {
+            if (null == result) {
+                /* Cancelled, keep showing the old one */
+                return;
+            }
             lastState = result;
             repaint();
         }
 
+        /**
+         * Paints everything, but gives up (returning null) as soon as the
+         * DynamicScene notices that status is cancelled.
+         */
         @Override
         public DisplayState apply(
         final DisplayDescription in, final CancelStatus status) {
-            /* Check status! */
             if (null == in) {
                 return EMPTY;
             }
 
             final PaintConfig config =
                 PaintConfig.builder(in.model).buildFor(in.width, in.height);
+            /* Both layers must be painted alike */
+            final TiledRenderer rend = renderer;
+            StaticLayer layer = staticLayer;
+            if (null == layer || !layer.isFor(in.model.getSegments(), config,
+                rend.isAntialiased())) {
+                layer = paintStatic(rend, in.model.getSegments(), config);
+                staticLayer = layer;
+            }
+
             final BufferedImage img =
                 new BufferedImage(config.getWidth(), config.getHeight(),
                     BufferedImage.TYPE_INT_RGB);
-            final Graphics2D outer = img.createGraphics();
-            outer.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-            final Painter p = fac.start(config, outer);
-
-            /* Model */
-            for (final ImmutableLine mirr : in.model.getMirrors()) {
-                p.drawMirror(mirr);
+            layer.img.copyData(img.getRaster());
+            if (!rend.render(img, config, fac, new DynamicScene(in), status)) {
+                return null;
             }
+
+            return new DisplayState(img, config);
+        }
+
+        private StaticLayer paintStatic(final TiledRenderer rend,
+        final SegmentTable mirrors, final PaintConfig config) {
+            final BufferedImage img =
+                new BufferedImage(config.getWidth(), config.getHeight(),
+                    BufferedImage.TYPE_INT_RGB);
+            rend.render(img, config, fac, new Scene() {
+                @Override
+                public boolean paint(final Painter p,
+                final CancelStatus status) {
+                    for (int id = 0; id < mirrors.size(); ++id) {
+                        p.drawMirror(mirrors.line(id));
+                    }
+                    return true;
+                }
+            }, CancelStatus.CONTINUE);
+            return new StaticLayer(mirrors, config, rend.isAntialiased(), img);
+        }
+    }
+
+    /**
+     * Everything but the mirrors. Painted once per band, see TiledRenderer.
+     */
+    private static final class DynamicScene implements Scene {
+        private final DisplayDescription in;
+
+        public DynamicScene(final DisplayDescription in) {
+            this.in = in;
+        }
+
+        /**
+         * Gives up as soon as it notices that status is cancelled. That's
+         * checked every CANCEL_CHECK_INTERVAL items.
+         */
+        @Override
+        public boolean paint(final Painter p, final CancelStatus status) {
             p.drawSource(in.model.getSource());
             p.drawSink(in.model.getSink());
 
             /* RayGroups */
+            int drawn = 0;
             for (final RayGroup gr : in.groups) {
+                if (0 == ++drawn % CANCEL_CHECK_INTERVAL
+                    && status.isCancelled()) {
+                    return false;
+                }
                 p.drawGroup(gr);
             }
 
             /* Rays */
             for (final Ray r : in.rays) {
+                if (0 == ++drawn % CANCEL_CHECK_INTERVAL
+                    && status.isCancelled()) {
+                    return false;
+                }
                 p.drawRay(r);
             }
-
-            return new DisplayState(img, config);
+            return true;
         }
     }
 }
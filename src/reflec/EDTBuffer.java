@@ -2,21 +2,26 @@ package reflec;
 
 import java.awt.EventQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.SwingWorker;
 
 import com.google.common.base.Preconditions;
 
 public final class EDTBuffer<I, O> implements Buffer<I, O> {
-    public static final Factory FACTORY = new Factory() {
-        @Override
-        public <I, O> Buffer<I, O> create(
-        final Function<I, O> function, final OutputListener<O> listener,
-        final I initialInput, final O nullOutput) {
-            return new EDTBuffer<I, O>(function, listener,
-                initialInput, nullOutput);
-        }
-    };
+    public static final Factory FACTORY = factory(null, false, null);
+
+    /**
+     * Like FACTORY, but a new input cancels the running computation (through
+     * its CancelStatus) instead of letting it complete. Only the latest
+     * input is ever published. Good for expensive functions where
+     * intermediate results are useless.
+     */
+    public static final Factory CANCELLING_FACTORY =
+        factory(null, true, null);
 
     private static final boolean VERBOSE = false;
 
@@ -26,6 +31,13 @@ public final class EDTBuffer<I, O> implements Buffer<I, O> {
 
     private final O nullOutput;
 
+    private final boolean cancelStale;
+
+    /** Where the workers run, or null for the shared SwingWorker pool */
+    private final Executor executor;
+
+    private final TimingListener timing;
+
     private SwingWorker<O, Void> active;
 
     private O newestOut;
@@ -36,14 +48,62 @@ public final class EDTBuffer<I, O> implements Buffer<I, O> {
 
     private EDTBuffer(final Function<I, O> function,
     final OutputListener<O> listener,
-    final I initialInput, final O nullOutput) {
+    final I initialInput, final O nullOutput, final boolean cancelStale,
+    final Executor executor, final TimingListener timing) {
         this.nullOutput = nullOutput;
+        this.cancelStale = cancelStale;
+        this.executor = executor;
+        this.timing = timing;
         this.function = function;
         this.listener = listener;
 
         adjust(initialInput, true);
     }
 
+    /**
+     * Creates a Factory for EDTBuffers whose workers run on the given
+     * executor, e.g. a single thread (see newSingleThreadExecutor()), a
+     * small pool, or one virtual thread per task where available.
+     *
+     * @param executor
+     *            where to run the workers, or null for the shared SwingWorker
+     *            pool
+     * @param cancelStale
+     *            whether a new input cancels the running computation (see
+     *            CANCELLING_FACTORY)
+     * @param timing
+     *            gets told how long each job waited and ran, or null
+     */
+    public static Factory factory(final Executor executor,
+    final boolean cancelStale, final TimingListener timing) {
+        return new Factory() {
+            @Override
+            public <I, O> Buffer<I, O> create(
+            final Function<I, O> function, final OutputListener<O> listener,
+            final I initialInput, final O nullOutput) {
+                return new EDTBuffer<I, O>(function, listener,
+                    initialInput, nullOutput, cancelStale, executor, timing);
+            }
+        };
+    }
+
+    /**
+     * Creates an executor with a single daemon thread, so there's never more
+     * than one job of a buffer running, and nothing else competes for it.
+     */
+    public static ExecutorService newSingleThreadExecutor(final String name,
+    final int priority) {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                t.setPriority(priority);
+                return t;
+            }
+        });
+    }
+
     @Override
     public O get() {
         Preconditions.checkState(EventQueue.isDispatchThread());
@@ -70,6 +130,10 @@ public final class EDTBuffer<I, O> implements Buffer<I, O> {
              */
             hasNextInput = true;
             nextInput = input;
+            if (cancelStale) {
+                /* Don't wait for it, the next one starts in cancelled() */
+                active.cancel(false);
+            }
             if (VERBOSE) {
                 System.out.println("EDTBuffer.adjust(): Swallowed");
             }
@@ -122,12 +186,29 @@ public final class EDTBuffer<I, O> implements Buffer<I, O> {
         }
     }
 
+    protected void cancelled(final SwingWorker<O, Void> worker) {
+        Preconditions.checkState(EventQueue.isDispatchThread());
+        if (worker != active) {
+            /* Cancelled by a hard reset, which already started a new one */
+            return;
+        }
+
+        if (hasNextInput) {
+            active = new Worker(nextInput);
+            hasNextInput = false;
+            nextInput = null; // help gc
+            startWorker();
+        } else {
+            active = null;
+        }
+    }
+
     private void startWorker() {
-        /*
-         * TODO: Use different thread pool to avoid TEN threads idling, when
-         * there intentionally can only be one (or "very few") of them?
-         */
-        active.execute();
+        if (null == executor) {
+            active.execute();
+        } else {
+            executor.execute(active);
+        }
     }
 
     protected void completed(final SwingWorker<O, Void> worker,
@@ -158,26 +239,74 @@ public final class EDTBuffer<I, O> implements Buffer<I, O> {
         listener.update(result);
     }
 
+    /**
+     * Gets told about every job of an EDTBuffer, on the EDT.
+     */
+    public interface TimingListener {
+        /**
+         * @param queueNanos
+         *            how long the job waited for a thread
+         * @param runNanos
+         *            how long it ran; for a job that was cancelled while
+         *            running, only up to now
+         * @param cancelled
+         *            whether the job was cancelled
+         */
+        void jobDone(long queueNanos, long runNanos, boolean cancelled);
+    }
+
     private final class Worker extends SwingWorker<O, Void>
     implements CancelStatus {
         private final I in;
 
+        private final long created = System.nanoTime();
+
+        private volatile long started;
+
+        private volatile long finished;
+
         public Worker(final I in) {
             this.in = in;
         }
 
         @Override
         protected O doInBackground() throws Exception {
+            started = System.nanoTime();
             if (VERBOSE) {
                 System.out.println("EDTBuffer.Worker.doInBackground(): "
                     + Thread.currentThread());
             }
-            return function.apply(in, this);
+            try {
+                return function.apply(in, this);
+            } finally {
+                finished = System.nanoTime();
+            }
+        }
+
+        private void reportTiming() {
+            if (null == timing) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final long start = started;
+            final long end = finished;
+            if (0 == start) {
+                /* Never got to run */
+                timing.jobDone(now - created, 0, true);
+            } else {
+                timing.jobDone(start - created,
+                    (0 == end ? now : end) - start, isCancelled());
+            }
         }
 
         @Override
         protected void done() {
             Preconditions.checkState(EventQueue.isDispatchThread());
+            reportTiming();
+            if (isCancelled()) {
+                cancelled(this);
+                return;
+            }
             O result;
             try {
                 result = get();
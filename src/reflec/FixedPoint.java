@@ -0,0 +1,63 @@
+package reflec;
+
+/**
+ * Exact predicates for scenes with integer coordinates, like buildings.txt
+ * and most exports from GIS data.
+ *
+ * As long as all coordinates are integers of at most MAX_COORD, every
+ * intermediate result of relativeCCW fits into a long, so there's no
+ * rounding at all. Double arithmetic is only exact up to 2^26 or so.
+ */
+public final class FixedPoint {
+    /**
+     * Largest absolute value of a fixed coordinate. Differences then need 32
+     * bits, and a difference of two of their products still fits into a long.
+     */
+    public static final int MAX_COORD = (1 << 30) - 1;
+
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private FixedPoint() {
+        /* Utility class */
+    }
+
+    /**
+     * @return whether v can be stored as an int without any loss, and used
+     *         for the exact predicates. Not true for -0.0, as that wouldn't
+     *         survive the round trip.
+     */
+    public static boolean isFixed(final double v) {
+        return v == (int) v && Math.abs(v) <= MAX_COORD
+            && NEGATIVE_ZERO != Double.doubleToRawLongBits(v);
+    }
+
+    public static boolean isFixed(final double x, final double y) {
+        return isFixed(x) && isFixed(y);
+    }
+
+    /**
+     * Same as Line2D.relativeCCW(x1, y1, x2, y2, px, py), but exact. All
+     * arguments must be fixed coordinates, see isFixed.
+     */
+    public static int relativeCCW(final long x1, final long y1, final long x2,
+    final long y2, final long px, final long py) {
+        final long dx = x2 - x1;
+        final long dy = y2 - y1;
+        long relX = px - x1;
+        long relY = py - y1;
+        long ccw = relX * dy - relY * dx;
+        if (0 == ccw) {
+            /* Collinear, so which side of the segment is it on? */
+            ccw = relX * dx + relY * dy;
+            if (ccw > 0) {
+                relX -= dx;
+                relY -= dy;
+                ccw = relX * dx + relY * dy;
+                if (ccw < 0) {
+                    ccw = 0;
+                }
+            }
+        }
+        return Long.signum(ccw);
+    }
+}
@@ -0,0 +1,78 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+public final class FixedPointTest {
+    public FixedPointTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testIsFixed() {
+        assertTrue(FixedPoint.isFixed(0));
+        assertTrue(FixedPoint.isFixed(-17));
+        assertTrue(FixedPoint.isFixed(FixedPoint.MAX_COORD));
+        assertTrue(FixedPoint.isFixed(-FixedPoint.MAX_COORD));
+        assertFalse(FixedPoint.isFixed(FixedPoint.MAX_COORD + 1.0));
+        assertFalse(FixedPoint.isFixed(0.5));
+        assertFalse(FixedPoint.isFixed(-0.0));
+        assertFalse(FixedPoint.isFixed(Double.NaN));
+        assertFalse(FixedPoint.isFixed(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testSameAsLine2D() {
+        /* Small enough that double arithmetic is exact, too */
+        final Random r = new Random(42);
+        for (int i = 0; i < 10000; ++i) {
+            final int[] c = new int[6];
+            for (int j = 0; j < c.length; ++j) {
+                c[j] = r.nextInt(11) - 5;
+            }
+            assertEquals(
+                Line2D.relativeCCW(c[0], c[1], c[2], c[3], c[4], c[5]),
+                FixedPoint.relativeCCW(c[0], c[1], c[2], c[3], c[4], c[5]));
+        }
+    }
+
+    @Test
+    public void testExact() {
+        /* Double arithmetic rounds this to "on the line" */
+        final ImmutableLine l =
+            new ImmutableLine(0, 0, 1073740908, 1073741118);
+        assertEquals(0, Line2D.relativeCCW(0, 0, 1073740908, 1073741118,
+            986819025, 986819218));
+        assertEquals(1, FixedPoint.relativeCCW(0, 0, 1073740908, 1073741118,
+            986819025, 986819218));
+        assertEquals(1, l.relativeCCW(986819025, 986819218));
+
+        /* Extreme values don't overflow */
+        final int m = FixedPoint.MAX_COORD;
+        assertEquals(1, FixedPoint.relativeCCW(-m, -m, m, m, m, -m));
+        assertEquals(-1, FixedPoint.relativeCCW(-m, -m, m, m, -m, m));
+        assertEquals(0, FixedPoint.relativeCCW(-m, -m, m, m, 0, 0));
+        assertEquals(1, FixedPoint.relativeCCW(-m, m, 0, m, m, m));
+        assertEquals(-1, FixedPoint.relativeCCW(0, m, m, m, -m, m));
+    }
+
+    @Test
+    public void testSegmentTable() {
+        final SegmentTable fixed =
+            SegmentTable.of(new double[] {1, -2, 3, 4, 5, 6, 7, 8 });
+        assertTrue(fixed.isFixed());
+        assertEquals(-2, fixed.y1(0), 0);
+        assertEquals(new ImmutableLine(5, 6, 7, 8), fixed.line(1));
+
+        final SegmentTable fractional =
+            SegmentTable.of(new double[] {1, 2, 3, 4.5 });
+        assertFalse(fractional.isFixed());
+        assertEquals(4.5, fractional.y2(0), 0);
+    }
+}
@@ -5,7 +5,18 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Objects;
 
+/**
+ * A line segment that can't change, so everything the predicates need about
+ * the line itself (direction, cross term, length) is computed only once.
+ * relativeCCW and ptLineDist give exactly the same results as the static
+ * helpers of Line2D, they just don't recompute those terms on every call.
+ *
+ * If both the line and the point have fixed coordinates (see FixedPoint),
+ * relativeCCW is exact instead.
+ */
 public final class ImmutableLine extends Line2D {
+    private static final boolean DEBUG = false;
+
     private static final double EPSILON = 0.0001;
 
     public final ImmutablePoint p1;
@@ -14,6 +25,21 @@ public final class ImmutableLine extends Line2D {
 
     public final ImmutablePoint p2;
 
+    /** p2 - p1 */
+    private final double dx;
+
+    private final double dy;
+
+    /** p1.x * p2.y - p1.y * p2.x, as needed by getIntersection */
+    private final double cross;
+
+    private final double lengthSq;
+
+    private final double length;
+
+    /** Whether the end points are fixed coordinates */
+    private final boolean fixed;
+
     public ImmutableLine(final double x1, final double y1,
     final double x2, final double y2) {
         this(new ImmutablePoint(x1, y1), new ImmutablePoint(x2, y2));
@@ -23,6 +49,13 @@ public final class ImmutableLine extends Line2D {
         this.p1 = Objects.requireNonNull(p1);
         this.p2 = Objects.requireNonNull(p2);
         mid = new ImmutablePoint((p1.x + p2.x) / 2, (p1.y + p2.y) / 2);
+        dx = p2.x - p1.x;
+        dy = p2.y - p1.y;
+        cross = p1.x * p2.y - p1.y * p2.x;
+        lengthSq = dx * dx + dy * dy;
+        length = Math.sqrt(lengthSq);
+        fixed =
+            FixedPoint.isFixed(p1.x, p1.y) && FixedPoint.isFixed(p2.x, p2.y);
     }
 
     @Override
@@ -63,12 +96,12 @@ public final class ImmutableLine extends Line2D {
     }
 
     public ImmutablePoint mirror(final ImmutablePoint orig) {
-        final boolean ccwSide = relativeCCW(orig) > 0;
-        final double dist = ptLineDist(orig);
-        final double factor = (2 * dist) / p1.distance(p2);
+        final boolean ccwSide = relativeCCW(orig.x, orig.y) > 0;
+        final double dist = ptLineDist(orig.x, orig.y);
+        final double factor = (2 * dist) / length;
 
-        final double relX = -(p2.y - p1.y) * factor;
-        final double relY = (p2.x - p1.x) * factor;
+        final double relX = -dy * factor;
+        final double relY = dx * factor;
 
         final ImmutablePoint ret;
         if (ccwSide) {
@@ -79,6 +112,80 @@ public final class ImmutableLine extends Line2D {
         return ret;
     }
 
+    public double length() {
+        return length;
+    }
+
+    /**
+     * Same as Line2D.relativeCCW(x1, y1, x2, y2, px, py), except that it's
+     * exact for fixed coordinates.
+     */
+    @Override
+    public int relativeCCW(final double px, final double py) {
+        if (fixed && FixedPoint.isFixed(px, py)) {
+            return FixedPoint.relativeCCW((long) p1.x, (long) p1.y,
+                (long) p2.x, (long) p2.y, (long) px, (long) py);
+        }
+        double relX = px - p1.x;
+        double relY = py - p1.y;
+        double ccw = relX * dy - relY * dx;
+        if (ccw == 0.0) {
+            /* Collinear, so which side of the segment is it on? */
+            ccw = relX * dx + relY * dy;
+            if (ccw > 0.0) {
+                relX -= dx;
+                relY -= dy;
+                ccw = relX * dx + relY * dy;
+                if (ccw < 0.0) {
+                    ccw = 0.0;
+                }
+            }
+        }
+        return (ccw < 0.0) ? -1 : ((ccw > 0.0) ? 1 : 0);
+    }
+
+    @Override
+    public int relativeCCW(final Point2D p) {
+        return relativeCCW(p.getX(), p.getY());
+    }
+
+    /**
+     * Whether a and b are on the same side, where "on the line" counts as
+     * the ccw side. That's (relativeCCW(a) >= 0) == (relativeCCW(b) >= 0).
+     */
+    public boolean sameCcwSide(final Point2D a, final Point2D b) {
+        return (relativeCCW(a.getX(), a.getY()) >= 0)
+            == (relativeCCW(b.getX(), b.getY()) >= 0);
+    }
+
+    /**
+     * Same as Line2D.ptLineDistSq(x1, y1, x2, y2, px, py).
+     */
+    @Override
+    public double ptLineDistSq(final double px, final double py) {
+        final double relX = px - p1.x;
+        final double relY = py - p1.y;
+        final double dotprod = relX * dx + relY * dy;
+        final double projlenSq = dotprod * dotprod / lengthSq;
+        final double lenSq = relX * relX + relY * relY - projlenSq;
+        return lenSq < 0 ? 0 : lenSq;
+    }
+
+    @Override
+    public double ptLineDistSq(final Point2D pt) {
+        return ptLineDistSq(pt.getX(), pt.getY());
+    }
+
+    @Override
+    public double ptLineDist(final double px, final double py) {
+        return Math.sqrt(ptLineDistSq(px, py));
+    }
+
+    @Override
+    public double ptLineDist(final Point2D pt) {
+        return ptLineDist(pt.getX(), pt.getY());
+    }
+
     @Override
     public void setLine(final double x1, final double y1,
     final double x2, final double y2) {
@@ -119,10 +226,6 @@ public final class ImmutableLine extends Line2D {
 
     public void getIntersection(final double x1, final double y1,
     final double x2, final double y2, final Point2D into) {
-        final double x3 = p1.x;
-        final double y3 = p1.y;
-        final double x4 = p2.x;
-        final double y4 = p2.y;
         // CHECKSTYLE LineLength OFF Can't break a link.
         /*
          * Using
@@ -131,28 +234,30 @@ public final class ImmutableLine extends Line2D {
          */
         // CHECKSTYLE LineLength ON
         final double p1diffX = x1 - x2;
-        final double p2diffX = x3 - x4;
         final double p1diffY = y1 - y2;
-        final double p2diffY = y3 - y4;
+        /* Not -dx, as that would turn +0.0 into -0.0 */
+        final double p2diffX = p1.x - p2.x;
+        final double p2diffY = p1.y - p2.y;
         final double denominator = p1diffX * p2diffY - p1diffY * p2diffX;
 
         if (Math.abs(denominator) >= EPSILON) {
             final double p1cross = x1 * y2 - y1 * x2;
-            final double p2cross = x3 * y4 - y3 * x4;
-            final double numeratorX = p1cross * p2diffX - p1diffX * p2cross;
-            final double numeratorY = p1cross * p2diffY - p1diffY * p2cross;
+            final double numeratorX = p1cross * p2diffX - p1diffX * cross;
+            final double numeratorY = p1cross * p2diffY - p1diffY * cross;
             into.setLocation(
                 numeratorX / denominator, numeratorY / denominator);
-            /* Roughly 22 flops. TODO: Optimize this? */
         } else {
-            System.err.format(
-                "ImmutableLine.getIntersection(): Parallel lines found?"
-                    + "%n\t%s and [(%f,%f)->(%f,%f)]"
-                    + " result in denominator %f%n",
-                toString(),
-                new java.lang.Double(x1), new java.lang.Double(y1),
-                new java.lang.Double(x2), new java.lang.Double(y2),
-                new java.lang.Double(denominator));
+            /* NaN says it all, and this may happen a lot */
+            if (DEBUG) {
+                System.err.format(
+                    "ImmutableLine.getIntersection(): Parallel lines found?"
+                        + "%n\t%s and [(%f,%f)->(%f,%f)]"
+                        + " result in denominator %f%n",
+                    toString(),
+                    new java.lang.Double(x1), new java.lang.Double(y1),
+                    new java.lang.Double(x2), new java.lang.Double(y2),
+                    new java.lang.Double(denominator));
+            }
             into.setLocation(java.lang.Double.NaN, java.lang.Double.NaN);
         }
     }
@@ -2,6 +2,9 @@ package reflec;
 
 import static org.junit.Assert.assertEquals;
 
+import java.awt.geom.Line2D;
+import java.util.Random;
+
 import org.junit.Test;
 
 public final class ImmutableLineTest {
@@ -76,4 +79,24 @@ public final class ImmutableLineTest {
             actual.toRawString(), expected.toRawString());
         assertEquals(errMsg, expected.x, actual.x, DELTA);
     }
+
+    @Test
+    public void testPredicatesMatchLine2D() {
+        final Random r = new Random(42);
+        for (int i = 0; i < 10000; ++i) {
+            /* Small integers, so collinear and degenerate cases happen */
+            final double[] c = new double[6];
+            for (int j = 0; j < c.length; ++j) {
+                c[j] = i % 2 == 0 ? r.nextInt(5) : r.nextGaussian() * 100;
+            }
+            final ImmutableLine l = new ImmutableLine(c[0], c[1], c[2], c[3]);
+            assertEquals(
+                Line2D.relativeCCW(c[0], c[1], c[2], c[3], c[4], c[5]),
+                l.relativeCCW(c[4], c[5]));
+            final double distSq =
+                Line2D.ptLineDistSq(c[0], c[1], c[2], c[3], c[4], c[5]);
+            assertEquals(Double.doubleToLongBits(distSq),
+                Double.doubleToLongBits(l.ptLineDistSq(c[4], c[5])));
+        }
+    }
 }
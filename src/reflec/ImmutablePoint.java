@@ -1,9 +1,18 @@
 package reflec;
 
 import java.awt.geom.Point2D;
-import java.util.Collection;
+import java.math.BigDecimal;
 
 public final class ImmutablePoint extends Point2D.Double {
+    /**
+     * Keys of pseudoAngle() that differ by more than this are ordered like
+     * the exact angles. Each key is off by a few ulps of 2 at most.
+     */
+    public static final double PSEUDO_ANGLE_ERROR = 1e-14;
+
+    /** Relative error bound of the cross product in compareAngles() */
+    private static final double CROSS_ERROR = 1e-15;
+
     /** Not meant for serialization. */
     private static final long serialVersionUID = 1L;
 
@@ -21,6 +30,100 @@ public final class ImmutablePoint extends Point2D.Double {
         return Math.atan2(that.y - this.y, that.x - this.x);
     }
 
+    /**
+     * Computes a "diamond angle" in [-2, 2], which follows the conventions of
+     * {@link #angle(ImmutablePoint)}, including the sign of zero and the cut
+     * at -PI / PI, but needs neither atan2 nor any other transcendental
+     * function. Only good for comparisons, and only if the keys differ by
+     * more than PSEUDO_ANGLE_ERROR: the division rounds, so nearly collinear
+     * directions may come out in the wrong order or tie. Use compareAngles()
+     * for those.
+     *
+     * @param that
+     *            the point to look at
+     * @return the pseudo-angle from this to that
+     */
+    public double pseudoAngle(final ImmutablePoint that) {
+        final double dx = that.x - this.x;
+        final double dy = that.y - this.y;
+        /* Look at the sign bits, so that -0.0 behaves like in atan2 */
+        final boolean negX = java.lang.Double.doubleToRawLongBits(dx) < 0;
+        final boolean negY = java.lang.Double.doubleToRawLongBits(dy) < 0;
+        final double absX = Math.abs(dx);
+        final double absY = Math.abs(dy);
+
+        final double halfAngle;
+        if (0 == absX && 0 == absY) {
+            halfAngle = negX ? 2 : 0;
+        } else if (negX) {
+            halfAngle = 1 + absX / (absX + absY);
+        } else {
+            halfAngle = absY / (absX + absY);
+        }
+        return negY ? -halfAngle : halfAngle;
+    }
+
+    /**
+     * Compares angle(a) and angle(b) as if atan2 was exact, using the signs
+     * of the coordinate differences and their cross product. Only the same
+     * direction compares equal. All coordinates must be finite.
+     */
+    public int compareAngles(final ImmutablePoint a, final ImmutablePoint b) {
+        final double ax = a.x - this.x;
+        final double ay = a.y - this.y;
+        final double bx = b.x - this.x;
+        final double by = b.y - this.y;
+
+        /* Lower half [-PI, -0] before upper half [+0, PI] */
+        final boolean aLow = java.lang.Double.doubleToRawLongBits(ay) < 0;
+        final boolean bLow = java.lang.Double.doubleToRawLongBits(by) < 0;
+        if (aLow != bLow) {
+            return aLow ? -1 : 1;
+        }
+        final int res = Integer.compare(rankInHalf(ax, ay, aLow),
+            rankInHalf(bx, by, bLow));
+        if (0 != res || 1 != rankInHalf(ax, ay, aLow)
+            || (ax == bx && ay == by)) {
+            return res;
+        }
+        /* Both inside the same half, so counter clockwise is increasing */
+        return -crossSign(ax, ay, bx, by);
+    }
+
+    /**
+     * @return 0 for the start of the half (-PI or +0), 2 for its end (-0 or
+     *         PI), and 1 for everything in between
+     */
+    private static int rankInHalf(final double dx, final double dy,
+    final boolean low) {
+        if (0 != dy) {
+            return 1;
+        }
+        final boolean negX = java.lang.Double.doubleToRawLongBits(dx) < 0;
+        return negX == low ? 0 : 2;
+    }
+
+    /**
+     * @return the exact sign of ax * by - ay * bx
+     */
+    private static int crossSign(final double ax, final double ay,
+    final double bx, final double by) {
+        if (FixedPoint.isFixed(ax, ay) && FixedPoint.isFixed(bx, by)) {
+            return Long.signum((long) ax * (long) by - (long) ay * (long) bx);
+        }
+        final double left = ax * by;
+        final double right = ay * bx;
+        final double cross = left - right;
+        if (Math.abs(cross)
+            > CROSS_ERROR * (Math.abs(left) + Math.abs(right))) {
+            return cross > 0 ? 1 : -1;
+        }
+        /* Too close to call (or underflow), so do it exactly */
+        return new BigDecimal(ax).multiply(new BigDecimal(by))
+            .subtract(new BigDecimal(ay).multiply(new BigDecimal(bx)))
+            .signum();
+    }
+
     @Override
     public void setLocation(final double x, final double y) {
         throw new UnsupportedOperationException();
@@ -34,31 +137,4 @@ public final class ImmutablePoint extends Point2D.Double {
     public String toString() {
         return "ImmutablePoint" + toRawString();
     }
-
-    public ImmutableLine computeNearest(
-    final ImmutablePoint direction, final Collection<ImmutableLine> lines) {
-        if (lines.isEmpty()) {
-            return null;
-        }
-
-        final ImmutableLine dirLine = new ImmutableLine(this, direction);
-
-        ImmutableLine best = null;
-        double sqBestDist = java.lang.Double.POSITIVE_INFINITY;
-
-        /* TODO: Avoid iterating over SweepIterator#openSet */
-        final Point2D.Double buf = new Point2D.Double();
-        for (final ImmutableLine line : lines) {
-            dirLine.getIntersection(line, buf);
-            final double sqBufDist = this.distanceSq(buf);
-
-            if (sqBufDist < sqBestDist) {
-                sqBestDist = sqBufDist;
-                best = line;
-            }
-        }
-
-        /* Note: Can be null when lines are parallel. */
-        return best;
-    }
 }
@@ -1,6 +1,10 @@
 package reflec;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -60,4 +64,122 @@ public final class ImmutablePointTest {
             assertEquals(point[2], center.angle(p), DELTA);
         }
     }
+
+    @Test
+    public void testPseudoAngle() {
+        /* Not shifted, so that the sign of zero survives */
+        final ImmutablePoint center = new ImmutablePoint(0, 0);
+        final double[][] points = new double[][] {
+            {
+                -1, -0.0,
+            },
+            {
+                -1, -EPSILON,
+            },
+            {
+                -3, -1,
+            },
+            {
+                -1, -1,
+            },
+            {
+                +0, -1,
+            },
+            {
+                +1, -1,
+            },
+            {
+                +1, -0.0,
+            },
+            {
+                +1, +0,
+            },
+            {
+                +1, +1,
+            },
+            {
+                +0, +1,
+            },
+            {
+                -1, +1,
+            },
+            {
+                -1, +EPSILON,
+            },
+            {
+                -1, +0,
+            },
+        };
+
+        for (int i = 0; i < points.length; ++i) {
+            final ImmutablePoint p1 =
+                new ImmutablePoint(points[i][0], points[i][1]);
+            for (int j = 0; j < points.length; ++j) {
+                final ImmutablePoint p2 =
+                    new ImmutablePoint(points[j][0], points[j][1]);
+                assertEquals(
+                    Integer.signum(Double.compare(
+                        center.angle(p1), center.angle(p2))),
+                    Integer.signum(Double.compare(
+                        center.pseudoAngle(p1), center.pseudoAngle(p2))));
+            }
+        }
+    }
+
+    @Test
+    public void testCompareAnglesFractional() {
+        final ImmutablePoint center = new ImmutablePoint(0, 0);
+        /* Their pseudo-angles come out the other way around */
+        final ImmutablePoint p1 =
+            new ImmutablePoint(0.7644703964442963, 0.759954413758579);
+        final ImmutablePoint p2 =
+            new ImmutablePoint(0.7644703964443424, 0.7599544137586248);
+        assertTrue(Math.abs(center.pseudoAngle(p1) - center.pseudoAngle(p2))
+            <= ImmutablePoint.PSEUDO_ANGLE_ERROR);
+        assertEquals(1, center.compareAngles(p1, p2));
+        assertEquals(-1, center.compareAngles(p2, p1));
+        assertEquals(1, Double.compare(center.angle(p1), center.angle(p2)));
+
+        /* Nearly collinear fractional directions, around a fractional center */
+        final Random r = new Random(42);
+        final ImmutablePoint c = new ImmutablePoint(r.nextDouble() * 100,
+            r.nextDouble() * 100);
+        for (int i = 0; i < 100000; ++i) {
+            final double angle = (r.nextDouble() * 2 - 1) * Math.PI;
+            final ImmutablePoint a = new ImmutablePoint(
+                c.x + r.nextDouble() * 10 * Math.cos(angle),
+                c.y + r.nextDouble() * 10 * Math.sin(angle));
+            final double nudge = r.nextInt(5) * Math.ulp(angle);
+            final ImmutablePoint b = new ImmutablePoint(
+                c.x + r.nextDouble() * 10 * Math.cos(angle + nudge),
+                c.y + r.nextDouble() * 10 * Math.sin(angle + nudge));
+            final int res = c.compareAngles(a, b);
+            assertEquals(-res, c.compareAngles(b, a));
+            assertEquals(exactCompare(c, a, b), res);
+            /* atan2 is only off by a few ulps */
+            final double diff = c.angle(a) - c.angle(b);
+            if (Math.abs(diff) > 8 * Math.ulp(Math.PI)) {
+                assertEquals((int) Math.signum(diff), res);
+            }
+        }
+    }
+
+    /**
+     * Same as ImmutablePoint.compareAngles, always with BigDecimals.
+     */
+    private static int exactCompare(final ImmutablePoint center,
+    final ImmutablePoint a, final ImmutablePoint b) {
+        final double ax = a.x - center.x;
+        final double ay = a.y - center.y;
+        final double bx = b.x - center.x;
+        final double by = b.y - center.y;
+        final int halfA = ay < 0 ? 0 : 1;
+        final int halfB = by < 0 ? 0 : 1;
+        if (halfA != halfB) {
+            return Integer.compare(halfA, halfB);
+        }
+        return -new BigDecimal(ax).multiply(new BigDecimal(by))
+            .subtract(new BigDecimal(ay).multiply(new BigDecimal(bx)))
+            .signum();
+    }
 }
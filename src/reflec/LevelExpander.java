@@ -0,0 +1,163 @@
+package reflec;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import reflec.Buffer.CancelStatus;
+import reflec.RayGroup.ReflectionResult;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Expands one reflection level into the next one, i.e. calls doReflection()
+ * on all given groups and collects the results.
+ *
+ * The groups of one level are independent of each other (they only read the
+ * immutable Model), so this can be done in parallel. Either way, the
+ * resulting groups and rays are in the order of the given groups, so the
+ * result doesn't depend on the strategy.
+ */
+public final class LevelExpander {
+    public static final LevelExpander SEQUENTIAL = new LevelExpander(null);
+
+    private final ForkJoinPool pool;
+
+    private LevelExpander(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static LevelExpander parallel() {
+        return parallel(PoolHolder.POOL);
+    }
+
+    public static LevelExpander parallel(final ForkJoinPool pool) {
+        return new LevelExpander(pool);
+    }
+
+    public boolean isParallel() {
+        return null != pool;
+    }
+
+    public Level expand(final List<RayGroup> groups) {
+        return expand(groups, CancelStatus.CONTINUE);
+    }
+
+    /**
+     * @throws CancellationException
+     *             soon after status is cancelled
+     */
+    public Level expand(final List<RayGroup> groups,
+    final CancelStatus status) {
+        final ReflectionResult[] results = new ReflectionResult[groups.size()];
+        if (null == pool || groups.size() < 2) {
+            for (int i = 0; i < results.length; ++i) {
+                results[i] = groups.get(i).doReflection(status);
+            }
+        } else {
+            pool.invoke(
+                new ReflectTask(groups, results, 0, results.length, status));
+        }
+
+        final ImmutableList.Builder<RayGroup> next = ImmutableList.builder();
+        final ImmutableList.Builder<Ray> rays = ImmutableList.builder();
+        final ImmutableList.Builder<Visibility> visibilities =
+            ImmutableList.builder();
+        for (final ReflectionResult result : results) {
+            next.addAll(result.getGroups());
+            final Ray ray = result.getFoundRay();
+            if (null != ray) {
+                rays.add(ray);
+            }
+            final Visibility visibility = result.getVisibility();
+            if (null != visibility) {
+                visibilities.add(visibility);
+            }
+        }
+        return new Level(next.build(), rays.build(), visibilities.build());
+    }
+
+    public static final class Level {
+        private final ImmutableList<RayGroup> groups;
+
+        private final ImmutableList<Ray> rays;
+
+        private final ImmutableList<Visibility> visibilities;
+
+        public Level(final ImmutableList<RayGroup> groups,
+        final ImmutableList<Ray> rays,
+        final ImmutableList<Visibility> visibilities) {
+            this.groups = groups;
+            this.rays = rays;
+            this.visibilities = visibilities;
+        }
+
+        /**
+         * @return the groups of the next level
+         */
+        public ImmutableList<RayGroup> getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return the rays found by the expanded groups
+         */
+        public ImmutableList<Ray> getRays() {
+            return rays;
+        }
+
+        /**
+         * @return what the expanded groups could see, in order
+         */
+        public ImmutableList<Visibility> getVisibilities() {
+            return visibilities;
+        }
+    }
+
+    private static final class ReflectTask extends RecursiveAction {
+        /** Not meant for serialization. */
+        private static final long serialVersionUID = 1L;
+
+        private final List<RayGroup> groups;
+
+        private final ReflectionResult[] results;
+
+        private final int from;
+
+        private final int to;
+
+        private final CancelStatus status;
+
+        public ReflectTask(final List<RayGroup> groups,
+        final ReflectionResult[] results, final int from, final int to,
+        final CancelStatus status) {
+            this.groups = groups;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.status = status;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                /* A single sweep is already plenty of work */
+                results[from] = groups.get(from).doReflection(status);
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ReflectTask(groups, results, from, mid, status),
+                new ReflectTask(groups, results, mid, to, status));
+        }
+    }
+
+    private static final class PoolHolder {
+        /** One worker per core. Lazily created, see the holder idiom. */
+        public static final ForkJoinPool POOL = new ForkJoinPool();
+
+        private PoolHolder() {
+            /* Nothing to do here */
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package reflec;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Uniform grid over a set of mirrors. Every mirror is registered in each cell
+ * it passes through, so a region query only has to look at the cells covered
+ * by the region.
+ *
+ * Queries never miss a mirror that touches the region, but may return some
+ * that don't, so the caller still has to filter them exactly. The result
+ * keeps the iteration order of the original mirror set, which the sweep
+ * relies on for breaking ties.
+ */
+public final class MirrorIndex {
+    private final SegmentTable segments;
+
+    private final UniformGrid grid;
+
+    /** Cell i owns cellItems[cellStart[i] .. cellStart[i + 1]) */
+    private final int[] cellStart;
+
+    private final int[] cellItems;
+
+    public MirrorIndex(final ImmutableSet<ImmutableLine> mirrorSet) {
+        this(SegmentTable.of(mirrorSet));
+    }
+
+    /**
+     * Only looks at the coordinates, so it doesn't create any lines.
+     */
+    public MirrorIndex(final SegmentTable segments) {
+        this.segments = segments;
+        final int count = segments.size();
+
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int id = 0; id < count; ++id) {
+            x0 = Math.min(x0, Math.min(segments.x1(id), segments.x2(id)));
+            y0 = Math.min(y0, Math.min(segments.y1(id), segments.y2(id)));
+            x1 = Math.max(x1, Math.max(segments.x1(id), segments.x2(id)));
+            y1 = Math.max(y1, Math.max(segments.y1(id), segments.y2(id)));
+        }
+        /* Roughly one mirror per cell */
+        grid = new UniformGrid(x0, y0, x1, y1, Math.max(1, count));
+
+        /* Two passes: count, then fill */
+        final int cells = grid.size();
+        cellStart = new int[cells + 1];
+        final int[] range = new int[2];
+        for (int id = 0; id < count; ++id) {
+            final double ya = segments.y1(id);
+            final double yb = segments.y2(id);
+            for (int row = grid.row(Math.min(ya, yb));
+                row <= grid.row(Math.max(ya, yb)); ++row) {
+                if (columns(id, row, range)) {
+                    for (int col = range[0]; col <= range[1]; ++col) {
+                        ++cellStart[grid.cell(row, col) + 1];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < cells; ++i) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellItems = new int[cellStart[cells]];
+        final int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int id = 0; id < count; ++id) {
+            final double ya = segments.y1(id);
+            final double yb = segments.y2(id);
+            for (int row = grid.row(Math.min(ya, yb));
+                row <= grid.row(Math.max(ya, yb)); ++row) {
+                if (columns(id, row, range)) {
+                    for (int col = range[0]; col <= range[1]; ++col) {
+                        cellItems[fill[grid.cell(row, col)]++] = id;
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return segments.size();
+    }
+
+    /**
+     * @return the bounding box of all mirrors, or null if there are none
+     */
+    public Rectangle2D.Double getBounds() {
+        if (0 == segments.size()) {
+            return null;
+        }
+        return grid.getBounds();
+    }
+
+    /**
+     * Returns all mirrors that may intersect the area that the source can see
+     * through the gate, i.e. everything beyond the gate between the rays from
+     * the source through gate.p1 and gate.p2.
+     *
+     * @param source
+     *            the (mirrored) source
+     * @param gate
+     *            the gate, counter clockwise as seen from source
+     * @return a superset of the mirrors in the wedge, in original order
+     */
+    public ImmutableList<ImmutableLine> inWedge(final ImmutablePoint source,
+    final ImmutableLine gate) {
+        final ImmutableList.Builder<ImmutableLine> ret =
+            ImmutableList.builder();
+        for (final int id : idsInWedge(source, gate)) {
+            ret.add(segments.line(id));
+        }
+        return ret.build();
+    }
+
+    /**
+     * Like inWedge(), but returns the ids in getSegments() instead, in
+     * ascending order. This doesn't create any lines.
+     */
+    public int[] idsInWedge(final ImmutablePoint source,
+    final ImmutableLine gate) {
+        if (0 == segments.size()) {
+            return new int[0];
+        }
+
+        final ClipPolygon area = grid.wedge(source, gate);
+        if (null == area) {
+            return new int[0];
+        }
+
+        int[] found = new int[16];
+        int nFound = 0;
+        final ClipPolygon band = grid.newBand();
+        for (int row = grid.row(area.minY()); row <= grid.row(area.maxY());
+            ++row) {
+            if (!grid.band(area, row, band)) {
+                continue;
+            }
+            final int cellTo = grid.cell(row, grid.column(band.maxX()));
+            for (int cell = grid.cell(row, grid.column(band.minX()));
+                cell <= cellTo; ++cell) {
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+                    if (nFound == found.length) {
+                        found = Arrays.copyOf(found, 2 * nFound);
+                    }
+                    found[nFound++] = cellItems[i];
+                }
+            }
+        }
+
+        /* Mirrors span several cells, so sort and merge */
+        Arrays.sort(found, 0, nFound);
+        int nUnique = 0;
+        for (int i = 0; i < nFound; ++i) {
+            if (0 == i || found[i] != found[i - 1]) {
+                found[nUnique++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, nUnique);
+    }
+
+    public SegmentTable getSegments() {
+        return segments;
+    }
+
+    /**
+     * Determines the columns of the given row that the segment passes
+     * through.
+     */
+    private boolean columns(final int id, final int row, final int[] into) {
+        return grid.columns(segments.x1(id), segments.y1(id), segments.x2(id),
+            segments.y2(id), row, into);
+    }
+}
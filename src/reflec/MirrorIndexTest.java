@@ -0,0 +1,63 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public final class MirrorIndexTest {
+    private static final ImmutablePoint ORIGIN = new ImmutablePoint(0, 0);
+
+    private static final int FILLER = 10;
+
+    public MirrorIndexTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testEmpty() {
+        final MirrorIndex index =
+            new MirrorIndex(ImmutableSet.<ImmutableLine> of());
+        assertEquals(0, index.size());
+        assertTrue(index.inWedge(ORIGIN,
+            new ImmutableLine(1, 1, 1, -1)).isEmpty());
+    }
+
+    @Test
+    public void testWedge() {
+        final ImmutableLine near = new ImmutableLine(40, -1, 40, 1);
+        final ImmutableLine crossing = new ImmutableLine(0, 8, 20, 8);
+        final ImmutableLine far = new ImmutableLine(90, -30, 90, 30);
+        final ImmutableSet.Builder<ImmutableLine> b = ImmutableSet.builder();
+        b.add(far);
+        /* Lots of mirrors behind the source, so the grid gets fine enough */
+        for (int i = 0; i < FILLER; ++i) {
+            for (int j = 0; j < FILLER; ++j) {
+                b.add(new ImmutableLine(-10 * i - 10, 10 * j - 50,
+                    -10 * i - 15, 10 * j - 45));
+            }
+        }
+        b.add(near);
+        b.add(crossing);
+        final ImmutableSet<ImmutableLine> mirrors = b.build();
+
+        final MirrorIndex index = new MirrorIndex(mirrors);
+        assertEquals(mirrors.size(), index.size());
+
+        /* Looking to the right, through x = 1 */
+        final ImmutableList<ImmutableLine> found =
+            index.inWedge(ORIGIN, new ImmutableLine(1, 1, 1, -1));
+        assertTrue(found.size() < mirrors.size() / 2);
+        assertEquals(ImmutableList.of(far, near, crossing), found);
+
+        /* Looking to the left, through x = -1 */
+        final ImmutableList<ImmutableLine> back =
+            index.inWedge(ORIGIN, new ImmutableLine(-1, -1, -1, 1));
+        assertTrue(!back.contains(near));
+        assertTrue(!back.contains(far));
+        assertTrue(back.size() > found.size());
+    }
+}
@@ -3,17 +3,35 @@ package reflec;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 
 public final class Model {
     public static final String FILE_NAME = "sample.txt";
 
-    private final ImmutableSet<ImmutableLine> mirrors;
+    /** Keyword of Model.from for an open chain of mirrors */
+    public static final String POLYLINE = "polyline";
+
+    /** Keyword of Model.from for a closed chain of mirrors */
+    public static final String POLYGON = "polygon";
+
+    public static final int MIN_POLYLINE_POINTS = 2;
+
+    public static final int MIN_POLYGON_POINTS = 3;
+
+    /** Don't trust the point count of a chain too much up front */
+    static final int MAX_INITIAL_CHAIN_SIZE = 1024;
+
+    private final SegmentTable segments;
+
+    private final MirrorIndex mirrorIndex;
 
     private final ImmutablePoint source;
 
@@ -21,11 +39,35 @@ public final class Model {
 
     public Model(final ImmutableSet<ImmutableLine> mirrors,
     final ImmutablePoint source, final ImmutablePoint sink) {
-        this.mirrors = mirrors;
+        this(SegmentTable.of(mirrors), source, sink);
+    }
+
+    /**
+     * Creates a model straight from packed segments, without creating an
+     * ImmutableLine for each of them up front.
+     */
+    public Model(final SegmentTable segments,
+    final ImmutablePoint source, final ImmutablePoint sink) {
+        this(segments, new MirrorIndex(segments), source, sink);
+    }
+
+    private Model(final SegmentTable segments, final MirrorIndex mirrorIndex,
+    final ImmutablePoint source, final ImmutablePoint sink) {
+        this.segments = segments;
+        this.mirrorIndex = mirrorIndex;
         this.source = source;
         this.sink = sink;
     }
 
+    /**
+     * Creates a model with the same mirrors (and the same index over them),
+     * but with a different source and sink.
+     */
+    public Model withEndpoints(
+    final ImmutablePoint newSource, final ImmutablePoint newSink) {
+        return new Model(segments, mirrorIndex, newSource, newSink);
+    }
+
     public ImmutablePoint getSource() {
         return source;
     }
@@ -34,16 +76,38 @@ public final class Model {
         return sink;
     }
 
+    /**
+     * @return the mirrors, as lines. For a model built from a SegmentTable,
+     *         this creates all of them on the first call.
+     */
     public ImmutableSet<ImmutableLine> getMirrors() {
-        return mirrors;
+        return segments.asSet();
+    }
+
+    /**
+     * @return the mirrors, packed. Models with the same mirrors (see
+     *         withEndpoints()) share the same table.
+     */
+    public SegmentTable getSegments() {
+        return segments;
+    }
+
+    public MirrorIndex getMirrorIndex() {
+        return mirrorIndex;
     }
 
     @Override
     public String toString() {
         return String.format("Model[%s->%s @ %d mirrors]",
-            source, sink, Integer.valueOf(mirrors.size()));
+            source, sink, Integer.valueOf(segments.size()));
     }
 
+    /**
+     * Reads source and sink, followed by any number of mirrors, each either
+     * as two points, or as "polyline N" or "polygon N" followed by N points.
+     * The mirrors of a polyline connect each point to the next one, and those
+     * of a polygon also the last one back to the first one.
+     */
     public static Model from(final Scanner scanner) throws IOException {
         final Model ret;
         final Locale initialLocale = scanner.locale();
@@ -51,9 +115,13 @@ public final class Model {
         try {
             final Builder b = builder(parsePoint(scanner), parsePoint(scanner));
             while (scanner.hasNext()) {
-                b.add(new ImmutableLine(
-                    parsePoint(scanner),
-                    parsePoint(scanner)));
+                if (scanner.hasNextDouble()) {
+                    b.add(new ImmutableLine(
+                        parsePoint(scanner),
+                        parsePoint(scanner)));
+                } else {
+                    parseChain(scanner, b);
+                }
             }
             ret = b.build();
         } finally {
@@ -63,6 +131,36 @@ public final class Model {
         return ret;
     }
 
+    private static void parseChain(final Scanner scanner, final Builder b)
+    throws IOException {
+        final String keyword = scanner.next();
+        final boolean closed = POLYGON.equals(keyword);
+        if (!closed && !POLYLINE.equals(keyword)) {
+            throw new IOException("Neither a number nor a chain: " + keyword);
+        }
+        final int count;
+        try {
+            count = scanner.nextInt();
+        } catch (InputMismatchException e) {
+            throw new IOException(e);
+        } catch (NoSuchElementException e) {
+            throw new IOException(e);
+        }
+        if (count < (closed ? MIN_POLYGON_POINTS : MIN_POLYLINE_POINTS)) {
+            throw new IOException("Too few points for a " + keyword);
+        }
+        final List<ImmutablePoint> points =
+            new ArrayList<>(Math.min(count, MAX_INITIAL_CHAIN_SIZE));
+        for (int i = 0; i < count; ++i) {
+            points.add(parsePoint(scanner));
+        }
+        if (closed) {
+            b.addPolygon(points);
+        } else {
+            b.addPolyline(points);
+        }
+    }
+
     private static ImmutablePoint parsePoint(final Scanner scanner)
     throws IOException {
         try {
@@ -114,6 +212,30 @@ public final class Model {
             mirrors.add(line);
         }
 
+        /**
+         * Adds a mirror from each point to the next one. Neighbouring mirrors
+         * share their vertex, which the sweep can then often handle as a
+         * single TRANSITION (see AngularEventList).
+         */
+        public void addPolyline(final List<ImmutablePoint> points) {
+            Preconditions.checkArgument(points.size() >= MIN_POLYLINE_POINTS);
+            for (int i = 1; i < points.size(); ++i) {
+                mirrors.add(
+                    new ImmutableLine(points.get(i - 1), points.get(i)));
+            }
+        }
+
+        /**
+         * Same as addPolyline, plus a mirror from the last point back to the
+         * first one.
+         */
+        public void addPolygon(final List<ImmutablePoint> points) {
+            Preconditions.checkArgument(points.size() >= MIN_POLYGON_POINTS);
+            addPolyline(points);
+            mirrors.add(new ImmutableLine(
+                points.get(points.size() - 1), points.get(0)));
+        }
+
         public Model build() {
             return new Model(mirrors.build(), source, sink);
         }
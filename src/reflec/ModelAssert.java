@@ -0,0 +1,26 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Assertions on models, shared by the tests of the various ways to load
+ * them.
+ */
+public final class ModelAssert {
+    private ModelAssert() {
+        /* Utility class */
+    }
+
+    /**
+     * Asserts the same source, sink and mirrors, in the same order.
+     */
+    public static void assertSameModel(final Model expected,
+    final Model actual) {
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getSink(), actual.getSink());
+        assertEquals(ImmutableList.copyOf(expected.getMirrors()),
+            ImmutableList.copyOf(actual.getMirrors()));
+    }
+}
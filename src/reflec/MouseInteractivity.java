@@ -69,8 +69,7 @@ implements Afterpainter, MouseListener, MouseMotionListener {
                     oldModel.getSource().y + diffY);
                 newSink = oldModel.getSink();
             }
-            final Model newModel =
-                new Model(oldModel.getMirrors(), newSource, newSink);
+            final Model newModel = oldModel.withEndpoints(newSource, newSink);
             mutModel.setModel(newModel);
         }
     }
@@ -0,0 +1,223 @@
+package reflec;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The set of currently "open" lines of a sweep, ordered by their distance to
+ * the source along the current sweep ray. The nearest line is therefore
+ * always the leftmost node of the tree.
+ *
+ * The order is only determined once, upon insertion. This is sound because
+ * mirrors don't cross each other (they may touch at their endpoints), so two
+ * lines that are open at the same time never swap places.
+ *
+ * Internally, this is a treap with parent links, so that lines can be removed
+ * through their node without consulting the order again.
+ */
+public final class OpenLineTree {
+    private static final int PRIORITY_SEED = 0x2545F491;
+
+    private final ImmutablePoint source;
+
+    private final Map<ImmutableLine, Node> nodes = new LinkedHashMap<>();
+
+    private Node root;
+
+    private int nextPriority = PRIORITY_SEED;
+
+    public OpenLineTree(final ImmutablePoint source) {
+        this.source = source;
+    }
+
+    /**
+     * Inserts a line that is hit by the current sweep ray.
+     *
+     * @param line
+     *            the line to insert
+     * @param probe
+     *            the point where the current sweep ray hits line
+     * @return whether the line was not yet contained
+     */
+    public boolean add(final ImmutableLine line, final ImmutablePoint probe) {
+        if (nodes.containsKey(line)) {
+            return false;
+        }
+
+        final Node node = new Node(line, priority());
+        nodes.put(line, node);
+
+        Node parent = null;
+        Node cur = root;
+        boolean left = false;
+        while (null != cur) {
+            parent = cur;
+            left = inFront(line, probe, cur.line);
+            cur = left ? cur.left : cur.right;
+        }
+
+        node.parent = parent;
+        if (null == parent) {
+            root = node;
+        } else if (left) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+
+        while (null != node.parent && node.priority > node.parent.priority) {
+            rotateUp(node);
+        }
+        return true;
+    }
+
+    public boolean remove(final ImmutableLine line) {
+        final Node node = nodes.remove(line);
+        if (null == node) {
+            return false;
+        }
+
+        while (null != node.left || null != node.right) {
+            if (null == node.right
+                || (null != node.left
+                && node.left.priority > node.right.priority)) {
+                rotateUp(node.left);
+            } else {
+                rotateUp(node.right);
+            }
+        }
+
+        if (null == node.parent) {
+            root = null;
+        } else if (node.parent.left == node) {
+            node.parent.left = null;
+        } else {
+            node.parent.right = null;
+        }
+        node.parent = null;
+        return true;
+    }
+
+    /**
+     * Same as add(beginning, probe) followed by remove(ending), where
+     * beginning starts at the vertex where ending stops.
+     *
+     * Usually, beginning simply takes over the place of ending: Mirrors don't
+     * cross, so whatever was in front of or behind ending at that vertex is
+     * also in front of or behind beginning. That saves looking for the place
+     * all over again.
+     */
+    public void replace(final ImmutableLine ending,
+    final ImmutableLine beginning, final ImmutablePoint probe) {
+        final Node node = nodes.get(ending);
+        if (null == node || nodes.containsKey(beginning)) {
+            add(beginning, probe);
+            remove(ending);
+            return;
+        }
+        nodes.remove(ending);
+        node.line = beginning;
+        nodes.put(beginning, node);
+    }
+
+    /**
+     * @return the open line nearest to the source along the current sweep ray,
+     *         or null if there are no open lines
+     */
+    public ImmutableLine getNearest() {
+        if (null == root) {
+            return null;
+        }
+        Node cur = root;
+        while (null != cur.left) {
+            cur = cur.left;
+        }
+        return cur.line;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * @return an unmodifiable view of the open lines, in insertion order
+     */
+    public Set<ImmutableLine> asSet() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    /**
+     * Determines whether .line (hit at .probe) is in front of .other, as seen
+     * from the source. Ties are resolved by the rest of .line, and if that
+     * doesn't help either, the newer line is considered to be behind.
+     */
+    private boolean inFront(final ImmutableLine line,
+    final ImmutablePoint probe, final ImmutableLine other) {
+        final int sourceSide = other.relativeCCW(source);
+        int probeSide = other.relativeCCW(probe);
+        if (0 == probeSide) {
+            /* Shared endpoint, so look at where .line goes from here */
+            probeSide = other.relativeCCW(line.mid);
+        }
+        return 0 != probeSide && probeSide == sourceSide;
+    }
+
+    private int priority() {
+        /* xorshift32, so that the shape is deterministic */
+        int x = nextPriority;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        nextPriority = x;
+        return x;
+    }
+
+    private void rotateUp(final Node node) {
+        final Node parent = node.parent;
+        final Node grandParent = parent.parent;
+
+        if (parent.left == node) {
+            parent.left = node.right;
+            if (null != node.right) {
+                node.right.parent = parent;
+            }
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (null != node.left) {
+                node.left.parent = parent;
+            }
+            node.left = parent;
+        }
+        parent.parent = node;
+
+        node.parent = grandParent;
+        if (null == grandParent) {
+            root = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+    }
+
+    private static final class Node {
+        /** Only changes through replace() */
+        public ImmutableLine line;
+
+        public final int priority;
+
+        public Node left;
+
+        public Node right;
+
+        public Node parent;
+
+        public Node(final ImmutableLine line, final int priority) {
+            this.line = line;
+            this.priority = priority;
+        }
+    }
+}
@@ -39,6 +39,21 @@ public final class PaintConfig {
         return new AffineTransform(transform);
     }
 
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof PaintConfig)) {
+            return false;
+        }
+        final PaintConfig that = (PaintConfig) obj;
+        return width == that.width && height == that.height
+            && transform.equals(that.transform);
+    }
+
+    @Override
+    public int hashCode() {
+        return (width * 31 + height) * 31 + transform.hashCode();
+    }
+
     public static Builder builder(final Model model) {
         return new Builder(model);
     }
@@ -55,9 +70,11 @@ public final class PaintConfig {
                 model.getSource().x, model.getSource().y, 0, 0);
             bounds.add(model.getSink());
 
-            for (final ImmutableLine line : model.getMirrors()) {
-                bounds.add(line.p1);
-                bounds.add(line.p2);
+            /* Known in advance, so this doesn't depend on the scene size */
+            final Rectangle2D mirrorBounds =
+                model.getMirrorIndex().getBounds();
+            if (null != mirrorBounds) {
+                bounds.add(mirrorBounds);
             }
             bounds.width = Math.max(Double.MIN_NORMAL, bounds.width);
             bounds.height = Math.max(Double.MIN_NORMAL, bounds.height);
@@ -9,13 +9,6 @@ public final class PhonyBuffer<I, O> implements Buffer<I, O> {
             return new PhonyBuffer<I, O>(function, listener, initialInput);
         }
     };
-    
-    private static final CancelStatus CONTINUE_STATUS = new CancelStatus() {
-        @Override
-        public boolean isCancelled() {
-            return false;
-        }
-    };
 
     private final Function<I, O> function;
 
@@ -31,7 +24,7 @@ public final class PhonyBuffer<I, O> implements Buffer<I, O> {
         this.function = function;
         this.listener = listener;
         this.lastInput = initialInput;
-        this.lastOutput = function.apply(initialInput, CONTINUE_STATUS);
+        this.lastOutput = function.apply(initialInput, CancelStatus.CONTINUE);
         listener.update(lastOutput);
     }
 
@@ -44,7 +37,7 @@ public final class PhonyBuffer<I, O> implements Buffer<I, O> {
     public void adjust(final I input, final boolean hard) {
         if (input != lastInput) {
             lastInput = input;
-            lastOutput = function.apply(input, CONTINUE_STATUS);
+            lastOutput = function.apply(input, CancelStatus.CONTINUE);
             listener.update(lastOutput);
         }
     }
@@ -10,6 +10,17 @@ public final class Ray {
         this.points = points;
     }
 
+    /**
+     * @return the total length of the path, from source to sink
+     */
+    public double getLength() {
+        double length = 0;
+        for (int i = 1; i < points.size(); ++i) {
+            length += points.get(i - 1).distance(points.get(i));
+        }
+        return length;
+    }
+
     public boolean equals(final Object obj) {
         return (obj instanceof Ray)
             && points.equals(((Ray) obj).points);
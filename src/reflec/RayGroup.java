@@ -11,20 +11,29 @@ public interface RayGroup {
 
     ReflectionResult doReflection();
 
+    /**
+     * Like doReflection(), but gives up with a CancellationException soon
+     * after status says so.
+     */
+    ReflectionResult doReflection(final Buffer.CancelStatus status);
+
     Beam toBeam();
 
     public static final class ReflectionResult {
         public static final ReflectionResult EMPTY =
-            new ReflectionResult(ImmutableList.<RayGroup> of(), null);
+            new ReflectionResult(ImmutableList.<RayGroup> of(), null, null);
 
         private final ImmutableList<RayGroup> groups;
 
         private final Ray foundRay;
 
+        private final Visibility visibility;
+
         public ReflectionResult(final ImmutableList<RayGroup> groups,
-        final Ray foundRay) {
+        final Ray foundRay, final Visibility visibility) {
             this.groups = Objects.requireNonNull(groups);
             this.foundRay = foundRay;
+            this.visibility = visibility;
         }
 
         public ImmutableList<RayGroup> getGroups() {
@@ -34,5 +43,12 @@ public interface RayGroup {
         public Ray getFoundRay() {
             return foundRay;
         }
+
+        /**
+         * @return what the group could see, or null if it can't see anything
+         */
+        public Visibility getVisibility() {
+            return visibility;
+        }
     }
 }
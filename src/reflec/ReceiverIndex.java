@@ -0,0 +1,125 @@
+package reflec;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over a list of receivers, in the same spirit as MirrorIndex:
+ * instead of asking every group about every receiver, each group only looks
+ * at the receivers in the cells its wedge covers.
+ *
+ * Queries never miss a receiver in the wedge, but may return some that
+ * aren't, so the caller still has to ask the group's Visibility.
+ */
+public final class ReceiverIndex {
+    /** Roughly this many receivers per cell */
+    private static final int RECEIVERS_PER_CELL = 4;
+
+    private final ImmutablePoint[] receivers;
+
+    private final UniformGrid grid;
+
+    /** Cell i owns cellItems[cellStart[i] .. cellStart[i + 1]) */
+    private final int[] cellStart;
+
+    private final int[] cellItems;
+
+    public ReceiverIndex(final List<ImmutablePoint> receiverList) {
+        receivers =
+            receiverList.toArray(new ImmutablePoint[receiverList.size()]);
+
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (final ImmutablePoint p : receivers) {
+            x0 = Math.min(x0, p.x);
+            y0 = Math.min(y0, p.y);
+            x1 = Math.max(x1, p.x);
+            y1 = Math.max(y1, p.y);
+        }
+        grid = new UniformGrid(x0, y0, x1, y1,
+            Math.max(1, receivers.length / RECEIVERS_PER_CELL));
+
+        /* Counting sort by cell, which keeps the receivers in order */
+        final int cells = grid.size();
+        cellStart = new int[cells + 1];
+        final int[] cellOf = new int[receivers.length];
+        for (int id = 0; id < receivers.length; ++id) {
+            cellOf[id] = grid.cell(grid.row(receivers[id].y),
+                grid.column(receivers[id].x));
+            ++cellStart[cellOf[id] + 1];
+        }
+        for (int i = 0; i < cells; ++i) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellItems = new int[receivers.length];
+        final int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int id = 0; id < receivers.length; ++id) {
+            cellItems[fill[cellOf[id]]++] = id;
+        }
+    }
+
+    public int size() {
+        return receivers.length;
+    }
+
+    public ImmutablePoint get(final int id) {
+        return receivers[id];
+    }
+
+    /**
+     * Returns all receivers that may be beyond the gate between the rays from
+     * the source through gate.p1 and gate.p2. A degenerate gate (both ends at
+     * the source) means that the whole plane is visible.
+     *
+     * @param source
+     *            the (mirrored) source
+     * @param gate
+     *            the gate, counter clockwise as seen from source
+     * @return the indices of a superset of the receivers in the wedge, in
+     *         ascending order
+     */
+    public int[] inWedge(final ImmutablePoint source,
+    final ImmutableLine gate) {
+        if (0 == receivers.length) {
+            return new int[0];
+        }
+        if (gate.p1.equals(gate.p2)) {
+            final int[] all = new int[receivers.length];
+            for (int id = 0; id < all.length; ++id) {
+                all[id] = id;
+            }
+            return all;
+        }
+
+        final ClipPolygon area = grid.wedge(source, gate);
+        if (null == area) {
+            return new int[0];
+        }
+
+        int[] found = new int[16];
+        int nFound = 0;
+        final ClipPolygon band = grid.newBand();
+        for (int row = grid.row(area.minY()); row <= grid.row(area.maxY());
+            ++row) {
+            if (!grid.band(area, row, band)) {
+                continue;
+            }
+            final int from =
+                cellStart[grid.cell(row, grid.column(band.minX()))];
+            final int to =
+                cellStart[grid.cell(row, grid.column(band.maxX())) + 1];
+            if (nFound + (to - from) > found.length) {
+                found = Arrays.copyOf(found,
+                    Math.max(2 * found.length, nFound + (to - from)));
+            }
+            System.arraycopy(cellItems, from, found, nFound, to - from);
+            nFound += to - from;
+        }
+
+        /* Every receiver is in exactly one cell, so no duplicates */
+        Arrays.sort(found, 0, nFound);
+        return Arrays.copyOf(found, nFound);
+    }
+}
@@ -0,0 +1,77 @@
+package reflec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public final class ReceiverIndexTest {
+    private static final ImmutablePoint ORIGIN = new ImmutablePoint(0, 0);
+
+    private static final int GRID = 20;
+
+    public ReceiverIndexTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testEmpty() {
+        final ReceiverIndex index =
+            new ReceiverIndex(ImmutableList.<ImmutablePoint> of());
+        assertEquals(0, index.size());
+        assertEquals(0, index.inWedge(ORIGIN,
+            new ImmutableLine(1, 1, 1, -1)).length);
+    }
+
+    @Test
+    public void testWedge() {
+        final List<ImmutablePoint> receivers = new ArrayList<>();
+        for (int i = 0; i < GRID; ++i) {
+            for (int j = 0; j < GRID; ++j) {
+                receivers.add(new ImmutablePoint(10 * i - 95, 10 * j - 95));
+            }
+        }
+        final ReceiverIndex index = new ReceiverIndex(receivers);
+        assertEquals(receivers.size(), index.size());
+
+        /* Degenerate gate: everything */
+        assertEquals(receivers.size(),
+            index.inWedge(ORIGIN, new ImmutableLine(ORIGIN, ORIGIN)).length);
+
+        /* Looking to the right, through x = 1 */
+        final int[] found =
+            index.inWedge(ORIGIN, new ImmutableLine(1, 1, 1, -1));
+        assertTrue(found.length < receivers.size() / 2);
+        int inside = 0;
+        for (int id = 0; id < receivers.size(); ++id) {
+            final ImmutablePoint p = receivers.get(id);
+            if (p.x > Math.abs(p.y)) {
+                ++inside;
+                assertTrue(contains(found, id));
+            }
+        }
+        assertTrue(inside > 0);
+        for (int i = 1; i < found.length; ++i) {
+            assertTrue(found[i - 1] < found[i]);
+        }
+
+        /* Looking away from everything */
+        assertArrayEquals(new int[0], index.inWedge(
+            new ImmutablePoint(200, 0), new ImmutableLine(201, 1, 201, -1)));
+    }
+
+    private static boolean contains(final int[] arr, final int value) {
+        for (final int i : arr) {
+            if (i == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
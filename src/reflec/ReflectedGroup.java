@@ -1,22 +1,20 @@
 package reflec;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
+import reflec.Buffer.CancelStatus;
 import reflec.SweepHelper.SweepEventIterator;
 
 import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 
 public final class ReflectedGroup extends AbstractRayGroup {
     private static final boolean DEBUG = false;
 
-    private static final Point2D.Double BUF = new Point2D.Double();
-
     private final AbstractRayGroup parent;
 
-    private final ImmutablePoint source;
-
     private final ImmutableLine ignore;
 
     public ReflectedGroup(final Model model, final AbstractRayGroup parent,
@@ -25,7 +23,6 @@ public final class ReflectedGroup extends AbstractRayGroup {
         super(model, parent.getReflectionLevel() + 1, source, gate);
 
         this.parent = parent;
-        this.source = source;
         this.ignore = Objects.requireNonNull(ignore);
 
         if (DEBUG) {
@@ -34,11 +31,11 @@ public final class ReflectedGroup extends AbstractRayGroup {
     }
 
     @Override
-    public ReflectionResult doReflection() {
-        final SweepEventIterator iter = startSweep();
+    public ReflectionResult doReflection(final CancelStatus status) {
+        final SweepEventIterator iter = startSweep(status);
 
         final CollectHelper collector =
-            new CollectHelper(model, this, iter, source, getGate().p2);
+            new CollectHelper(model, this, iter, getSource(), getGate().p2);
         collector.start();
 
         boolean breakOut = false;
@@ -58,6 +55,16 @@ public final class ReflectedGroup extends AbstractRayGroup {
                     }
                     break;
 
+                case TRANSITION:
+                    /* Just as if BEGIN and END had come one after another */
+                    if (collector.isVisible(ev.begin)) {
+                        collector.startSegment(ev.begin);
+                    }
+                    if (collector.isVisible(ev.end)) {
+                        collector.endSegment(ev.end.p);
+                    }
+                    break;
+
                 case POINT:
                     if (model.getSink() == ev.p) {
                         if (collector.isVisible(ev)) {
@@ -80,50 +87,82 @@ public final class ReflectedGroup extends AbstractRayGroup {
         return collector.build();
     }
 
-    private SweepEventIterator startSweep() {
+    private SweepEventIterator startSweep(final CancelStatus status) {
         final SweepEventIterator iter;
 
-        final SweepHelper builder = new SweepHelper(source, getGate());
+        final SweepHelper builder = new SweepHelper(getSource(), getGate());
 
         if (DEBUG) {
             System.out.println("ReflectedGroup.startSweep()"
-                + ": NEW SESSION by " + source + " through gate " + getGate());
+                + ": NEW SESSION by " + getSource() + " through gate "
+                + getGate());
+        }
+        /* Only look at mirrors that may be in the wedge at all */
+        final MirrorIndex index = model.getMirrorIndex();
+        final GateFilter filter = new GateFilter();
+        final List<ImmutableLine> filtered = new ArrayList<>();
+        for (final int id : index.idsInWedge(getSource(), getGate())) {
+            final ImmutableLine l = filter.apply(index.getSegments(), id);
+            if (null != l) {
+                filtered.add(l);
+            }
         }
-        final Iterable<ImmutableLine> filtered =
-            Iterables.filter(model.getMirrors(),
-                new GateFilter());
         /*
          * Note: Even if .filtered is empty now, we still might be interested in
          * the order of model.getSink() vs. getGate().p2
          */
-        builder.prepare(filtered);
+        builder.prepare(filtered, status);
 
-        if (getGate().relativeCCW(model.getSink()) <= 0) {
+        if (mayReach(model.getSink())) {
             builder.prepare(model.getSink());
         }
 
         builder.prepare(getGate().p1);
-        iter = builder.build();
+        iter = builder.build(status);
 
         return iter;
     }
 
     @Override
     public Ray.Builder pathTo(final ImmutablePoint dst) {
-        intersection2buf(dst);
-        final ImmutablePoint reflecPoint = new ImmutablePoint(BUF);
+        final Point2D.Double buf = new Point2D.Double();
+        intersection(dst, buf);
+        final ImmutablePoint reflecPoint = new ImmutablePoint(buf);
         final Ray.Builder builder = parent.pathTo(reflecPoint);
         builder.add(dst);
         return builder;
     }
 
-    private void intersection2buf(final ImmutablePoint dst) {
-        ignore.getIntersection(source.x, source.y, dst.x, dst.y, BUF);
+    /*
+     * Note: Groups are reflected concurrently (see LevelExpander), so don't
+     * share any buffers between calls.
+     */
+    private void intersection(final ImmutablePoint dst,
+    final Point2D.Double into) {
+        final ImmutablePoint source = getSource();
+        ignore.getIntersection(source.x, source.y, dst.x, dst.y, into);
     }
 
     @Override
-    public Beam toBeam() {
-        return parent.getCoveredAreaBuilder(getGate()).build();
+    protected boolean mayReach(final ImmutablePoint dst) {
+        return getGate().relativeCCW(dst) <= 0;
+    }
+
+    /**
+     * One line per level: the gate, and the part of each mirror on the way
+     * back to the source that the beam comes through.
+     */
+    @Override
+    protected Beam buildBeam() {
+        final Beam.Builder ret =
+            new Beam.Builder(getGate(), getReflectionLevel());
+        AbstractRayGroup group = parent;
+        while (group instanceof ReflectedGroup) {
+            final ReflectedGroup refl = (ReflectedGroup) group;
+            ret.throughMirror(refl.getSource(), refl.ignore);
+            group = refl.parent;
+        }
+        return ret.build(model.getSource());
     }
 
     @Override
@@ -135,30 +174,41 @@ public final class ReflectedGroup extends AbstractRayGroup {
             + "\tignore: %s%n",
             toIdentString(),
             parent.toIdentString(),
-            source.toRawString(),
+            getSource().toRawString(),
             getGate().toRawString(),
             ignore.toRawString());
     }
 
-    @Override
-    protected Beam.Builder getCoveredAreaBuilder(final ImmutableLine via) {
-        intersection2buf(via.p1);
-        final ImmutablePoint inter1 = new ImmutablePoint(BUF);
-        intersection2buf(via.p2);
-        final ImmutablePoint inter2 = new ImmutablePoint(BUF);
-
-        /* Must change order */
-        final ImmutableLine reflVia = new ImmutableLine(inter2, inter1);
-        final Beam.Builder ret = parent.getCoveredAreaBuilder(reflVia);
-        ret.add(via, source);
-        return ret;
-    }
-
     private final class GateFilter implements Predicate<ImmutableLine> {
+        private final Point2D.Double buf = new Point2D.Double();
+
         public GateFilter() {
             /* Nothing to do here */
         }
 
+        /**
+         * Like apply(line), but on the packed segment: Most of them are
+         * decided by the coordinates alone, so only the others, and the ones
+         * that pass, are turned into lines.
+         *
+         * @return the line if it passes, or null
+         */
+        public ImmutableLine apply(final SegmentTable segments, final int id) {
+            final ImmutableLine gate = getGate();
+            final boolean p1Vis =
+                gate.relativeCCW(segments.x1(id), segments.y1(id)) <= 0;
+            final boolean p2Vis =
+                gate.relativeCCW(segments.x2(id), segments.y2(id)) <= 0;
+            if (!p1Vis && !p2Vis) {
+                return null;
+            }
+            final ImmutableLine l = segments.line(id);
+            if (p1Vis && p2Vis) {
+                return ignore == l ? null : l;
+            }
+            return apply(l) ? l : null;
+        }
+
         @Override
         public boolean apply(final ImmutableLine l) {
             if (DEBUG) {
@@ -193,7 +243,7 @@ public final class ReflectedGroup extends AbstractRayGroup {
              */
             {
                 final ImmutableLine sightStart =
-                    new ImmutableLine(source, getGate().p1);
+                    new ImmutableLine(getSource(), getGate().p1);
                 final boolean p1AfterStart =
                     sightStart.relativeCCW(p1) >= 0;
                 final boolean p2AfterStart =
@@ -212,8 +262,8 @@ public final class ReflectedGroup extends AbstractRayGroup {
                  * the visible part
                  */
                 if (p1AfterStart && !p2AfterStart) {
-                    sightStart.getIntersection(l, BUF);
-                    p2 = new ImmutablePoint(BUF);
+                    sightStart.getIntersection(l, buf);
+                    p2 = new ImmutablePoint(buf);
                     p2Vis = getGate().relativeCCW(p2) <= 0;
                     if (p1Vis == p2Vis) {
                         if (DEBUG) {
@@ -223,8 +273,8 @@ public final class ReflectedGroup extends AbstractRayGroup {
                         return p1Vis;
                     }
                 } else if (!p1AfterStart && p2AfterStart) {
-                    sightStart.getIntersection(l, BUF);
-                    p1 = new ImmutablePoint(BUF);
+                    sightStart.getIntersection(l, buf);
+                    p1 = new ImmutablePoint(buf);
                     p1Vis = getGate().relativeCCW(p1) <= 0;
 
                     if (p1Vis == p2Vis) {
@@ -239,7 +289,7 @@ public final class ReflectedGroup extends AbstractRayGroup {
             }
             {
                 final ImmutableLine sightEnd =
-                    new ImmutableLine(source, getGate().p2);
+                    new ImmutableLine(getSource(), getGate().p2);
                 final boolean p1AfterEnd =
                     sightEnd.relativeCCW(p1) >= 0;
                 final boolean p2AfterEnd =
@@ -257,8 +307,8 @@ public final class ReflectedGroup extends AbstractRayGroup {
                  * "whats left of l" down to the visible part
                  */
                 if (!p1AfterEnd && p2AfterEnd) {
-                    sightEnd.getIntersection(l, BUF);
-                    p2 = new ImmutablePoint(BUF);
+                    sightEnd.getIntersection(l, buf);
+                    p2 = new ImmutablePoint(buf);
                     p2Vis = getGate().relativeCCW(p2) <= 0;
                     if (p1Vis == p2Vis) {
                         if (DEBUG) {
@@ -269,8 +319,8 @@ public final class ReflectedGroup extends AbstractRayGroup {
                         return p1Vis;
                     }
                 } else if (p1AfterEnd && !p2AfterEnd) {
-                    sightEnd.getIntersection(l, BUF);
-                    p1 = new ImmutablePoint(BUF);
+                    sightEnd.getIntersection(l, buf);
+                    p1 = new ImmutablePoint(buf);
                     p1Vis = getGate().relativeCCW(p1) <= 0;
 
                     if (p1Vis == p2Vis) {
@@ -291,9 +341,9 @@ public final class ReflectedGroup extends AbstractRayGroup {
              * that either of the endpoint just barely slipped over
              * the edge, and use the mid to determine it:
              */
-            BUF.x = (p1.x + p2.x) / 2;
-            BUF.y = (p1.y + p2.y) / 2;
-            final boolean ret = getGate().relativeCCW(BUF) <= 0;
+            buf.x = (p1.x + p2.x) / 2;
+            buf.y = (p1.y + p2.y) / 2;
+            final boolean ret = getGate().relativeCCW(buf) <= 0;
             if (DEBUG) {
                 System.out.println("\t" + ret + " ('final')");
             }
@@ -0,0 +1,184 @@
+package reflec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary format for models, which loads much faster than the text
+ * format of Model.from, as it's mapped into memory and read in bulk.
+ *
+ * Layout, all little-endian: the magic "RFLC", the version, the flags, the
+ * number of mirrors (ints), then source and sink (doubles), then x1, y1, x2,
+ * y2 of each mirror, as doubles, or as floats if FLAG_FLOAT is set.
+ *
+ * Usage: SceneFile [-float] IN.txt OUT.rflc converts from the text format.
+ */
+public final class SceneFile {
+    /** "RFLC" */
+    public static final int MAGIC = 0x434c4652;
+
+    public static final int VERSION = 1;
+
+    /** The mirrors are stored as floats, which halves the file size */
+    public static final int FLAG_FLOAT = 1;
+
+    private static final int HEADER_BYTES = 4 * 4 + 4 * 8;
+
+    private static final int COORDS_PER_MIRROR = 4;
+
+    private SceneFile() {
+        /* Utility class */
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final boolean asFloat = args.length == 3 && "-float".equals(args[0]);
+        if (args.length != (asFloat ? 3 : 2)) {
+            System.err.println("Usage: SceneFile [-float] IN.txt OUT.rflc");
+            System.exit(2);
+            return;
+        }
+        final int off = asFloat ? 1 : 0;
+        write(load(new File(args[off])), new File(args[off + 1]), asFloat);
+    }
+
+    /**
+     * Reads a model in either format: binary if it starts with MAGIC, the
+     * text format of Model.from otherwise (see TextSceneReader).
+     */
+    public static Model load(final File file) throws IOException {
+        if (isBinary(file)) {
+            return read(file);
+        }
+        return TextSceneReader.read(file);
+    }
+
+    private static boolean isBinary(final File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final byte[] head = new byte[4];
+            int read = 0;
+            while (read < head.length) {
+                final int n = in.read(head, read, head.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+            return MAGIC == ByteBuffer.wrap(head)
+                .order(ByteOrder.LITTLE_ENDIAN).getInt();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a model in the binary format.
+     *
+     * @throws IOException
+     *             if it can't be read, or isn't in the binary format
+     */
+    public static Model read(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer buf = channel
+                .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+            return read(buf);
+        } catch (final BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static Model read(final ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER_BYTES || MAGIC != buf.getInt()) {
+            throw new IOException("Not a scene file");
+        }
+        final int version = buf.getInt();
+        if (VERSION != version) {
+            throw new IOException("Unsupported version " + version);
+        }
+        final int flags = buf.getInt();
+        final int count = buf.getInt();
+        final int bytesPerCoord = 0 != (flags & FLAG_FLOAT) ? 4 : 8;
+        if (count < 0 || (long) count * COORDS_PER_MIRROR * bytesPerCoord
+            > buf.remaining() - 4 * 8) {
+            throw new IOException("Bad mirror count " + count);
+        }
+        final ImmutablePoint source =
+            new ImmutablePoint(buf.getDouble(), buf.getDouble());
+        final ImmutablePoint sink =
+            new ImmutablePoint(buf.getDouble(), buf.getDouble());
+
+        /* One bulk copy, instead of one call per coordinate */
+        final double[] coords = new double[count * COORDS_PER_MIRROR];
+        if (4 == bytesPerCoord) {
+            final float[] floats = new float[coords.length];
+            buf.asFloatBuffer().get(floats);
+            for (int i = 0; i < floats.length; ++i) {
+                coords[i] = floats[i];
+            }
+        } else {
+            buf.asDoubleBuffer().get(coords);
+        }
+
+        /* The lines are only created when needed */
+        return new Model(SegmentTable.wrap(coords), source, sink);
+    }
+
+    /**
+     * Writes a model in the binary format.
+     *
+     * @param asFloat
+     *            whether to store the mirrors as floats, which loses
+     *            precision unless they're small integers or the like
+     */
+    public static void write(final Model model, final File file,
+    final boolean asFloat) throws IOException {
+        final int count = model.getMirrors().size();
+        final ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES
+            + count * COORDS_PER_MIRROR * (asFloat ? 4 : 8))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(asFloat ? FLAG_FLOAT : 0);
+        buf.putInt(count);
+        buf.putDouble(model.getSource().x);
+        buf.putDouble(model.getSource().y);
+        buf.putDouble(model.getSink().x);
+        buf.putDouble(model.getSink().y);
+        for (final ImmutableLine l : model.getMirrors()) {
+            if (asFloat) {
+                buf.putFloat((float) l.p1.x);
+                buf.putFloat((float) l.p1.y);
+                buf.putFloat((float) l.p2.x);
+                buf.putFloat((float) l.p2.y);
+            } else {
+                buf.putDouble(l.p1.x);
+                buf.putDouble(l.p1.y);
+                buf.putDouble(l.p2.x);
+                buf.putDouble(l.p2.y);
+            }
+        }
+        buf.flip();
+
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static reflec.ModelAssert.assertSameModel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public final class SceneFileTest {
+    private static final Model DEFAULT_MODEL = Model.defaultModel();
+
+    public SceneFileTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void testRoundTripFloat() throws IOException {
+        /* The default model only has integer coordinates */
+        assertRoundTrip(true);
+    }
+
+    @Test
+    public void testText() throws IOException {
+        final Model read = SceneFile.load(new File(Model.FILE_NAME));
+        assertSameModel(DEFAULT_MODEL, read);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        final File file = File.createTempFile("scene", ".rflc");
+        try {
+            SceneFile.write(DEFAULT_MODEL, file, false);
+            final FileOutputStream out = new FileOutputStream(file, true);
+            out.getChannel().truncate(file.length() - 1);
+            out.close();
+            SceneFile.read(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDuplicateMirror() throws IOException {
+        final ImmutableList<ImmutableLine> mirrors =
+            DEFAULT_MODEL.getMirrors().asList();
+        final int count = mirrors.size() + 1;
+        final ByteBuffer buf =
+            ByteBuffer.allocate(4 * 4 + 4 * 8 + count * 4 * 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(SceneFile.MAGIC).putInt(SceneFile.VERSION).putInt(0)
+            .putInt(count);
+        buf.putDouble(DEFAULT_MODEL.getSource().x)
+            .putDouble(DEFAULT_MODEL.getSource().y)
+            .putDouble(DEFAULT_MODEL.getSink().x)
+            .putDouble(DEFAULT_MODEL.getSink().y);
+        for (final ImmutableLine l : Iterables.concat(mirrors,
+            ImmutableList.of(mirrors.get(0)))) {
+            buf.putDouble(l.p1.x).putDouble(l.p1.y)
+                .putDouble(l.p2.x).putDouble(l.p2.y);
+        }
+
+        final File file = File.createTempFile("scene", ".rflc");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            out.write(buf.array());
+            out.close();
+            final Model read = SceneFile.read(file);
+            assertSameModel(DEFAULT_MODEL, read);
+            assertEquals(mirrors.size(), read.getSegments().size());
+            assertEquals(new DefaultMutableModel(DEFAULT_MODEL, 3).getRays(),
+                new DefaultMutableModel(read, 3).getRays());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertRoundTrip(final boolean asFloat)
+    throws IOException {
+        final File file = File.createTempFile("scene", ".rflc");
+        try {
+            SceneFile.write(DEFAULT_MODEL, file, asFloat);
+            assertSameModel(DEFAULT_MODEL, SceneFile.read(file));
+            assertSameModel(DEFAULT_MODEL, SceneFile.load(file));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package reflec;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The mirrors of a Model, packed as x1, y1, x2, y2 per mirror into a single
+ * array, and identified by their index in it.
+ *
+ * Most mirrors are only ever looked at by coordinates (building the
+ * MirrorIndex, filtering the candidates of a sweep), so that's cheap and
+ * cache-friendly. The sweep itself needs ImmutableLines, and it relies on
+ * their identity, so line(id) always returns the same object for the same
+ * id. It's only created when first needed, which may be never for most
+ * mirrors of a large scene.
+ *
+ * If all coordinates are fixed (see FixedPoint), as in most scenes from
+ * GIS data, they're stored as ints, which halves the memory. The accessors
+ * return the very same values either way.
+ *
+ * Like the mirrors of a Model, the segments are distinct: Tables made from
+ * coordinates drop each segment that equals an earlier one, just like the
+ * ImmutableSet of Model.Builder does. The sweep can't cope with duplicates.
+ */
+public final class SegmentTable {
+    private static final int COORDS_PER_SEGMENT = 4;
+
+    /** null if the coordinates are fixed */
+    private final double[] coords;
+
+    /** The coordinates if they're fixed, otherwise null */
+    private final int[] fixedCoords;
+
+    private final AtomicReferenceArray<ImmutableLine> lines;
+
+    private volatile ImmutableSet<ImmutableLine> set;
+
+    private SegmentTable(final double[] coords,
+    final ImmutableSet<ImmutableLine> set) {
+        Preconditions.checkArgument(0 == coords.length % COORDS_PER_SEGMENT);
+        this.fixedCoords = toFixed(coords);
+        this.coords = null == fixedCoords ? coords : null;
+        this.lines = new AtomicReferenceArray<>(
+            coords.length / COORDS_PER_SEGMENT);
+        this.set = set;
+    }
+
+    /**
+     * @param coords
+     *            x1, y1, x2, y2 of each segment
+     */
+    public static SegmentTable of(final double[] coords) {
+        return wrap(coords.clone());
+    }
+
+    /**
+     * Like of(), but takes ownership of the array instead of copying it. It
+     * may be changed, if there are duplicates.
+     */
+    static SegmentTable wrap(final double[] coords) {
+        Preconditions.checkArgument(0 == coords.length % COORDS_PER_SEGMENT);
+        final int distinct = removeDuplicates(coords);
+        if (COORDS_PER_SEGMENT * distinct == coords.length) {
+            return new SegmentTable(coords, null);
+        }
+        return new SegmentTable(
+            Arrays.copyOf(coords, COORDS_PER_SEGMENT * distinct), null);
+    }
+
+    /**
+     * Moves the first occurrence of each segment to the front, in order.
+     * Segments are equal if ImmutableLine.equals() says so, which compares
+     * with ==, so 0.0 and -0.0 are the same.
+     *
+     * @return the number of distinct segments
+     */
+    private static int removeDuplicates(final double[] coords) {
+        final int count = coords.length / COORDS_PER_SEGMENT;
+        /* Open addressing, at most half full */
+        final int[] slots =
+            new int[Integer.highestOneBit(Math.max(1, count)) << 2];
+        Arrays.fill(slots, -1);
+        final int[] hashes = new int[count];
+        final int mask = slots.length - 1;
+
+        int distinct = 0;
+        for (int id = 0; id < count; ++id) {
+            final int from = COORDS_PER_SEGMENT * id;
+            final int hash = hashCode(coords, from);
+            int slot = ((hash * 0x9E3779B9) >>> 1) & mask;
+            boolean duplicate = false;
+            while (slots[slot] >= 0) {
+                final int other = slots[slot];
+                if (hashes[other] == hash
+                    && sameSegment(coords, COORDS_PER_SEGMENT * other, from)) {
+                    duplicate = true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!duplicate) {
+                System.arraycopy(coords, from,
+                    coords, COORDS_PER_SEGMENT * distinct, COORDS_PER_SEGMENT);
+                hashes[distinct] = hash;
+                slots[slot] = distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Consistent with sameSegment(), unlike ImmutableLine.hashCode(), which
+     * tells 0.0 and -0.0 apart.
+     */
+    private static int hashCode(final double[] coords, final int from) {
+        int ret = 0;
+        for (int i = from; i < from + COORDS_PER_SEGMENT; ++i) {
+            /* Adding 0.0 turns -0.0 into 0.0 */
+            final long bits = Double.doubleToLongBits(coords[i] + 0.0);
+            ret = 31 * ret + (int) (bits ^ (bits >>> 32));
+        }
+        return ret;
+    }
+
+    private static boolean sameSegment(final double[] coords, final int a,
+    final int b) {
+        return coords[a] == coords[b] && coords[a + 1] == coords[b + 1]
+            && coords[a + 2] == coords[b + 2]
+            && coords[a + 3] == coords[b + 3];
+    }
+
+    /**
+     * Uses the given lines as the segments, in iteration order.
+     */
+    public static SegmentTable of(final ImmutableSet<ImmutableLine> mirrors) {
+        final double[] coords =
+            new double[mirrors.size() * COORDS_PER_SEGMENT];
+        int i = 0;
+        for (final ImmutableLine l : mirrors) {
+            coords[i++] = l.p1.x;
+            coords[i++] = l.p1.y;
+            coords[i++] = l.p2.x;
+            coords[i++] = l.p2.y;
+        }
+        final SegmentTable ret = new SegmentTable(coords, mirrors);
+        int id = 0;
+        for (final ImmutableLine l : mirrors) {
+            ret.lines.set(id++, l);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the coordinates as ints, or null if any isn't fixed
+     */
+    private static int[] toFixed(final double[] coords) {
+        for (final double v : coords) {
+            if (!FixedPoint.isFixed(v)) {
+                return null;
+            }
+        }
+        final int[] ret = new int[coords.length];
+        for (int i = 0; i < coords.length; ++i) {
+            ret[i] = (int) coords[i];
+        }
+        return ret;
+    }
+
+    /**
+     * @return whether all coordinates are fixed, and thus stored as ints
+     */
+    public boolean isFixed() {
+        return null != fixedCoords;
+    }
+
+    public int size() {
+        return lines.length();
+    }
+
+    private double coord(final int index) {
+        /* Always the same branch for a table, so that's cheap */
+        if (null != fixedCoords) {
+            return fixedCoords[index];
+        }
+        return coords[index];
+    }
+
+    public double x1(final int id) {
+        return coord(COORDS_PER_SEGMENT * id);
+    }
+
+    public double y1(final int id) {
+        return coord(COORDS_PER_SEGMENT * id + 1);
+    }
+
+    public double x2(final int id) {
+        return coord(COORDS_PER_SEGMENT * id + 2);
+    }
+
+    public double y2(final int id) {
+        return coord(COORDS_PER_SEGMENT * id + 3);
+    }
+
+    /**
+     * @return the segment as a line, always the same object for the same id
+     */
+    public ImmutableLine line(final int id) {
+        final ImmutableLine known = lines.get(id);
+        if (null != known) {
+            return known;
+        }
+        final ImmutableLine created =
+            new ImmutableLine(x1(id), y1(id), x2(id), y2(id));
+        if (lines.compareAndSet(id, null, created)) {
+            return created;
+        }
+        /* Someone else was faster, so use theirs */
+        return lines.get(id);
+    }
+
+    /**
+     * @return all segments as lines, in order. Creates all of them.
+     */
+    public ImmutableSet<ImmutableLine> asSet() {
+        ImmutableSet<ImmutableLine> ret = set;
+        if (null == ret) {
+            /* Only once, so it's always the same set */
+            synchronized (this) {
+                ret = set;
+                if (null == ret) {
+                    final ImmutableSet.Builder<ImmutableLine> b =
+                        ImmutableSet.builder();
+                    for (int id = 0; id < size(); ++id) {
+                        b.add(line(id));
+                    }
+                    ret = b.build();
+                    set = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        if (null != fixedCoords) {
+            return "SegmentTable" + Arrays.toString(fixedCoords);
+        }
+        return "SegmentTable" + Arrays.toString(coords);
+    }
+}
@@ -0,0 +1,82 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public final class SegmentTableTest {
+    private static final Model DEFAULT_MODEL = Model.defaultModel();
+
+    private static final int DEPTH = 3;
+
+    public SegmentTableTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testOfSet() {
+        final ImmutableSet<ImmutableLine> mirrors = DEFAULT_MODEL.getMirrors();
+        final SegmentTable table = SegmentTable.of(mirrors);
+        assertEquals(mirrors.size(), table.size());
+        assertSame(mirrors, table.asSet());
+        int id = 0;
+        for (final ImmutableLine l : mirrors) {
+            assertSame(l, table.line(id));
+            assertEquals(l.p1.x, table.x1(id), 0);
+            assertEquals(l.p2.y, table.y2(id), 0);
+            ++id;
+        }
+    }
+
+    @Test
+    public void testOfCoords() {
+        final SegmentTable table =
+            SegmentTable.of(new double[] {1, 2, 3, 4, 5, 6, 7, 8 });
+        assertEquals(2, table.size());
+        assertEquals(new ImmutableLine(5, 6, 7, 8), table.line(1));
+        /* Created once, then always the same */
+        assertSame(table.line(1), table.line(1));
+        assertSame(table.line(0), table.asSet().asList().get(0));
+    }
+
+    @Test
+    public void testDuplicates() {
+        /* Both signs of zero are equal, so the first one stays */
+        final SegmentTable table = SegmentTable.of(new double[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 1, 2, 3, 4, 0.0, 0, 1, 1, -0.0, 0, 1, 1,
+            5, 6, 7, 8, });
+        assertEquals(ImmutableList.of(new ImmutableLine(1, 2, 3, 4),
+            new ImmutableLine(5, 6, 7, 8), new ImmutableLine(0, 0, 1, 1)),
+            table.asSet().asList());
+        assertEquals(3, table.size());
+        assertEquals(0, Double.doubleToRawLongBits(table.x1(2)));
+    }
+
+    @Test
+    public void testSameRays() {
+        final double[] coords =
+            new double[4 * DEFAULT_MODEL.getMirrors().size()];
+        int i = 0;
+        for (final ImmutableLine l : DEFAULT_MODEL.getMirrors()) {
+            coords[i++] = l.p1.x;
+            coords[i++] = l.p1.y;
+            coords[i++] = l.p2.x;
+            coords[i++] = l.p2.y;
+        }
+        final Model packed = new Model(SegmentTable.of(coords),
+            DEFAULT_MODEL.getSource(), DEFAULT_MODEL.getSink());
+
+        final ImmutableList<Ray> expected =
+            new DefaultMutableModel(DEFAULT_MODEL, DEPTH).getRays();
+        final ImmutableList<Ray> actual =
+            new DefaultMutableModel(packed, DEPTH).getRays();
+        assertEquals(expected.size(), actual.size());
+        for (int r = 0; r < expected.size(); ++r) {
+            assertEquals(expected.get(r).points, actual.get(r).points);
+        }
+    }
+}
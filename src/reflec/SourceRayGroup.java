@@ -1,5 +1,6 @@
 package reflec;
 
+import reflec.Buffer.CancelStatus;
 import reflec.SweepHelper.SweepEventIterator;
 
 import com.google.common.collect.ImmutableList;
@@ -11,19 +12,20 @@ public final class SourceRayGroup extends AbstractRayGroup {
     }
 
     @Override
-    public ReflectionResult doReflection() {
-        if (model.getMirrors().isEmpty()) {
+    public ReflectionResult doReflection(final CancelStatus status) {
+        if (0 == model.getSegments().size()) {
             return new ReflectionResult(
                 ImmutableList.<RayGroup> of(),
-                pathTo(model.getSink()).build());
+                pathTo(model.getSink()).build(),
+                Visibility.unobstructed(this, model.getSource()));
         }
 
         final SweepEventIterator iter;
         {
             final SweepHelper builder = new SweepHelper(model.getSource());
-            builder.prepare(model.getMirrors());
+            builder.prepare(model.getSegments(), status);
             builder.prepare(model.getSink());
-            iter = builder.build();
+            iter = builder.build(status);
         }
 
         final CollectHelper collector;
@@ -43,51 +45,51 @@ public final class SourceRayGroup extends AbstractRayGroup {
          */
         SweepEvent firstDigested = null;
 
+        sweep:
         while (true) {
-            final SweepEvent ev = iter.next();
-            final boolean wasNull = null == firstDigested;
-
-            switch (ev.type) {
-                case BEGIN:
-                    if (collector.isVisible(ev)) {
-                        collector.startSegment(ev);
-                        if (null == firstDigested) {
-                            firstDigested = ev;
-                            collector.start();
+            /* A TRANSITION is digested just like its BEGIN and END */
+            for (final SweepEvent ev : iter.next().getParts()) {
+                final boolean wasNull = null == firstDigested;
+
+                switch (ev.type) {
+                    case BEGIN:
+                        if (collector.isVisible(ev)) {
+                            collector.startSegment(ev);
+                            if (null == firstDigested) {
+                                firstDigested = ev;
+                                collector.start();
+                            }
                         }
-                    }
-                    break;
-
-                case END:
-                    if (collector.isVisible(ev)) {
-                        collector.endSegment(ev.p);
-                        if (null == firstDigested) {
-                            firstDigested = ev;
-                            collector.start();
+                        break;
+
+                    case END:
+                        if (collector.isVisible(ev)) {
+                            collector.endSegment(ev.p);
+                            if (null == firstDigested) {
+                                firstDigested = ev;
+                                collector.start();
+                            }
                         }
-                    }
-                    break;
-
-                case POINT:
-                    if (model.getSink() == ev.p) {
-                        if (null != firstDigested && collector.isVisible(ev)) {
-                            collector.setRay(ev.p);
+                        break;
+
+                    case POINT:
+                        if (model.getSink() == ev.p) {
+                            if (null != firstDigested
+                                && collector.isVisible(ev)) {
+                                collector.setRay(ev.p);
+                            }
+                        } else {
+                            throw new InternalError();
                         }
-                    } else {
-                        throw new InternalError();
-                    }
-                    break;
+                        break;
 
-                default:
-                    throw new InternalError();
-            }
+                    default:
+                        throw new InternalError();
+                }
 
-            if (!wasNull && ev == firstDigested) {
-                /*
-                 * Sigh. Why is "do {boolean foo = complexStuff();} while(foo);"
-                 * not allowed?!
-                 */
-                break;
+                if (!wasNull && ev == firstDigested) {
+                    break sweep;
+                }
             }
         }
 
@@ -100,13 +102,8 @@ public final class SourceRayGroup extends AbstractRayGroup {
     }
 
     @Override
-    protected Beam.Builder getCoveredAreaBuilder(final ImmutableLine via) {
-        return new Beam.Builder(model.getSource(), via);
-    }
-
-    @Override
-    public Beam toBeam() {
-        return new Beam.Builder(model.getSource(), getGate()).build();
+    protected Beam buildBeam() {
+        return new Beam.Builder(getGate(), 1).build(model.getSource());
     }
 
     public static boolean onCcwSideOf(
@@ -1,15 +1,18 @@
 package reflec;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
 import org.junit.Test;
 
 import reflec.Beam.RenderedBeam;
+import reflec.Buffer.CancelStatus;
 import reflec.RayGroup.ReflectionResult;
 
 public final class SourceRayGroupTest {
@@ -100,6 +103,39 @@ public final class SourceRayGroupTest {
         assertTrue(iter.isDone());
     }
 
+    @Test(expected = CancellationException.class)
+    public void testCancelled() {
+        initialGroup().doReflection(new CancelStatus() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void testVisibility() {
+        final ReflectionResult result = initialGroup().doReflection();
+        final Visibility visibility = result.getVisibility();
+
+        assertTrue(null != visibility);
+        assertTrue(visibility.sees(DEFAULT_MODEL.getSink()));
+        assertEquals(result.getFoundRay().points,
+            visibility.rayTo(DEFAULT_MODEL.getSink()).points);
+
+        /* Every mirror hides something */
+        for (final ImmutableLine mirror : DEFAULT_MODEL.getMirrors()) {
+            final ImmutablePoint s = DEFAULT_MODEL.getSource();
+            final ImmutablePoint behind = new ImmutablePoint(
+                2 * mirror.mid.x - s.x, 2 * mirror.mid.y - s.y);
+            final boolean sees = visibility.sees(behind);
+            assertEquals(sees, null != visibility.rayTo(behind));
+            if (mirror.relativeCCW(s) != 0) {
+                assertTrue(!sees);
+            }
+        }
+    }
+
     @Test
     public void testGetCoveredArea() {
         final RayGroup group = initialGroup();
@@ -112,6 +148,14 @@ public final class SourceRayGroupTest {
             s, s, null, s, s);
         assertIterator(beam.area.getPathIterator(null),
             s, s, s);
+        assertIterator(beam.centerline.getPathIterator(null),
+            s, s);
+        assertEquals(0, beam.maxWidth, DELTA_EPSILON);
+        assertTrue(beam.bounds.isEmpty());
+
+        /* Built once, rendered once per transform */
+        assertSame(group.toBeam(), group.toBeam());
+        assertSame(beam, group.toBeam().render(new AffineTransform()));
     }
 
     private static RayGroup initialGroup() {
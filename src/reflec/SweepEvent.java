@@ -1,7 +1,11 @@
 package reflec;
 
+import java.util.List;
 import java.util.Objects;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
 public final class SweepEvent {
     public final SweepEvent.Type type;
 
@@ -9,13 +13,43 @@ public final class SweepEvent {
 
     public final ImmutablePoint p;
 
+    /**
+     * Pseudo-angle as seen from the center, only good for ordering, and only
+     * together with p (see AngularEventList).
+     */
     public final double angle;
 
     public final int which;
 
+    /**
+     * For a TRANSITION, the BEGIN and the END event it stands for. Both are
+     * null for all other types.
+     */
+    public final SweepEvent begin;
+
+    public final SweepEvent end;
+
     private SweepEvent(final SweepEvent.Type type, final ImmutableLine line,
     final ImmutablePoint center, final boolean useEnd) {
         this.type = Objects.requireNonNull(type);
+        this.begin = null;
+        this.end = null;
+        this.l = line;
+        if (useEnd) {
+            p = l.p2;
+            which = 2;
+        } else {
+            p = l.p1;
+            which = 1;
+        }
+        this.angle = center.pseudoAngle(p);
+    }
+
+    private SweepEvent(final SweepEvent.Type type, final ImmutableLine line,
+    final boolean useEnd, final double angle) {
+        this.type = Objects.requireNonNull(type);
+        this.begin = null;
+        this.end = null;
         this.l = line;
         if (useEnd) {
             p = l.p2;
@@ -24,7 +58,7 @@ public final class SweepEvent {
             p = l.p1;
             which = 1;
         }
-        this.angle = center.angle(p);
+        this.angle = angle;
     }
 
     private SweepEvent(final ImmutablePoint p, final double angle) {
@@ -33,6 +67,18 @@ public final class SweepEvent {
         which = 0;
         this.p = p;
         this.angle = angle;
+        this.begin = null;
+        this.end = null;
+    }
+
+    private SweepEvent(final SweepEvent begin, final SweepEvent end) {
+        type = Type.TRANSITION;
+        l = begin.l;
+        which = begin.which;
+        p = begin.p;
+        angle = begin.angle;
+        this.begin = begin;
+        this.end = end;
     }
 
     @Override
@@ -50,7 +96,8 @@ public final class SweepEvent {
         }
 
         final SweepEvent that = (SweepEvent) obj;
-        return this.l.equals(that.l) && this.which == that.which;
+        return this.l.equals(that.l) && this.which == that.which
+            && this.type == that.type;
     }
 
     @Override
@@ -68,10 +115,46 @@ public final class SweepEvent {
 
     public static SweepEvent create(
     final ImmutablePoint interest, final ImmutablePoint center) {
-        return new SweepEvent(interest, center.angle(interest));
+        return new SweepEvent(interest, center.pseudoAngle(interest));
+    }
+
+    public static SweepEvent create(
+    final ImmutablePoint interest, final double angle) {
+        return new SweepEvent(interest, angle);
+    }
+
+    public static SweepEvent create(final SweepEvent.Type type,
+    final ImmutableLine line, final boolean useEnd, final double angle) {
+        return new SweepEvent(type, line, useEnd, angle);
+    }
+
+    /**
+     * @return an event for the vertex where end's line stops and begin's line
+     *         starts, as seen from the center
+     */
+    public static SweepEvent transition(
+    final SweepEvent begin, final SweepEvent end) {
+        Preconditions.checkArgument(Type.BEGIN == begin.type
+            && Type.END == end.type && begin.angle == end.angle);
+        return new SweepEvent(begin, end);
+    }
+
+    /**
+     * @return the events this one stands for: begin and end for a
+     *         TRANSITION, otherwise just this one
+     */
+    public List<SweepEvent> getParts() {
+        if (Type.TRANSITION == type) {
+            return ImmutableList.of(begin, end);
+        }
+        return ImmutableList.of(this);
     }
 
     public static enum Type {
-        BEGIN, END, POINT
+        BEGIN,
+        END,
+        POINT,
+        /** END of one line and BEGIN of another, at a shared vertex */
+        TRANSITION
     }
 }
@@ -1,58 +1,23 @@
 package reflec;
 
+import java.awt.geom.Point2D;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+
+import reflec.Buffer.CancelStatus;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.UnmodifiableIterator;
 
 public final class SweepHelper {
     private static final boolean DEBUG = false;
 
-    private static final Comparator<ImmutablePoint> POINT_COMPARATOR =
-        new Comparator<ImmutablePoint>() {
-            @Override
-            public int compare(
-            final ImmutablePoint o1, final ImmutablePoint o2) {
-                final int resX = Double.compare(o1.x, o2.x);
-                if (resX != 0) {
-                    return resX;
-                }
-                return Double.compare(o1.y, o2.y);
-            }
-        };
-
-    private static final Comparator<SweepEvent> EVENT_COMPARATOR =
-        new Comparator<SweepEvent>() {
-            @Override
-            public int compare(final SweepEvent o1, final SweepEvent o2) {
-                if (o1 == o2) {
-                    return 0;
-                }
-                if (null == o1) {
-                    return -1;
-                }
-                if (null == o2) {
-                    return 1;
-                }
-
-                return ComparisonChain.start()
-                    .compare(o1.angle, o2.angle)
-                    .compare(o1.type, o2.type)
-                    .compare(o1.which, o2.which)
-                    .compare(o1.l.p1, o2.l.p1, POINT_COMPARATOR)
-                    .compare(o1.l.p2, o2.l.p2, POINT_COMPARATOR)
-                    .result();
-            }
-        };
+    /** Look at the CancelStatus every that many events (a power of two) */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
 
     private static final SweepEventIterator EMPTY = new SweepEventIterator() {
         @Override
@@ -74,11 +39,16 @@ public final class SweepHelper {
         public Set<ImmutableLine> getOpenSet() {
             return Collections.emptySet();
         }
+
+        @Override
+        public ImmutableLine getNearest() {
+            return null;
+        }
     };
 
-    private final SortedSet<SweepEvent> set = new TreeSet<>(EVENT_COMPARATOR);
+    private final AngularEventList events;
 
-    private final Set<ImmutableLine> open = new LinkedHashSet<>();
+    private final OpenLineTree open;
 
     private final ImmutablePoint source;
 
@@ -88,17 +58,23 @@ public final class SweepHelper {
 
     public SweepHelper(final ImmutablePoint source) {
         this.source = source;
+        this.events = new AngularEventList(source);
+        this.open = new OpenLineTree(source);
         start = null;
     }
 
     public SweepHelper(final ImmutablePoint source,
     final ImmutablePoint start) {
         this.source = source;
+        this.events = new AngularEventList(source);
+        this.open = new OpenLineTree(source);
         this.start = SweepEvent.create(start, source);
     }
 
     public SweepHelper(final ImmutablePoint source, final ImmutableLine start) {
         this.source = source;
+        this.events = new AngularEventList(source);
+        this.open = new OpenLineTree(source);
 
         final SweepEvent[] pair = new SweepEvent[2];
         SweepEvent.insert(Objects.requireNonNull(start), pair, source);
@@ -106,53 +82,128 @@ public final class SweepHelper {
     }
 
     public void prepare(final Iterable<ImmutableLine> lines) {
+        prepare(lines, CancelStatus.CONTINUE);
+    }
+
+    /**
+     * @throws CancellationException
+     *             if status is cancelled, which is checked every
+     *             CANCEL_CHECK_INTERVAL lines
+     */
+    public void prepare(final Iterable<ImmutableLine> lines,
+    final CancelStatus status) {
         Preconditions.checkState(!built);
-        final SweepEvent[] pair = new SweepEvent[2];
+        final Point2D.Double buf = new Point2D.Double();
 
+        int count = 0;
         for (final ImmutableLine line : lines) {
-            SweepEvent.insert(line, pair, source);
-            set.add(pair[0]);
-            set.add(pair[1]);
-            /* if (pair[0] < gateBegin < pair[1]) // (but ON A CIRCLE) */
-            if (ordered(pair[0], start, pair[1])) {
-                open.add(line);
+            if (0 == (++count & (CANCEL_CHECK_INTERVAL - 1))) {
+                checkCancelled(status);
+            }
+            prepare(line, buf);
+        }
+    }
+
+    /**
+     * Same as prepare(segments.asSet()), but doesn't build the set.
+     */
+    public void prepare(final SegmentTable segments) {
+        prepare(segments, CancelStatus.CONTINUE);
+    }
+
+    /**
+     * Same as prepare(segments.asSet(), status), but doesn't build the set.
+     */
+    public void prepare(final SegmentTable segments,
+    final CancelStatus status) {
+        Preconditions.checkState(!built);
+        final Point2D.Double buf = new Point2D.Double();
+
+        for (int id = 0; id < segments.size(); ++id) {
+            if (0 == ((id + 1) & (CANCEL_CHECK_INTERVAL - 1))) {
+                checkCancelled(status);
             }
+            prepare(segments.line(id), buf);
+        }
+    }
+
+    private void prepare(final ImmutableLine line, final Point2D.Double buf) {
+        final int begin = events.addLine(line);
+        /* if (begin < gateBegin < end) // (but ON A CIRCLE) */
+        if (ordered(begin, start, begin + 1)) {
+            intersectStart(line, buf);
+            open.add(line, new ImmutablePoint(buf));
+        }
+    }
+
+    private void intersectStart(final ImmutableLine line,
+    final Point2D.Double into) {
+        if (null == start) {
+            /* Sorts before everything else, so this is "angle -PI" */
+            line.getIntersection(source.x, source.y,
+                source.x - 1, source.y, into);
+        } else {
+            line.getIntersection(source.x, source.y,
+                start.p.x, start.p.y, into);
         }
     }
 
     public void prepare(final ImmutablePoint point) {
         Preconditions.checkState(!built);
-        set.add(SweepEvent.create(point, source));
+        events.addPoint(point);
     }
 
     public SweepEventIterator build() {
+        return build(CancelStatus.CONTINUE);
+    }
+
+    /**
+     * Builds the iterator. It throws a CancellationException as soon as it
+     * notices that status is cancelled: before and after sorting the events,
+     * and then at least every CANCEL_CHECK_INTERVAL events.
+     */
+    public SweepEventIterator build(final CancelStatus status) {
         Preconditions.checkState(!built);
+        checkCancelled(status);
         built = true;
 
-        if (set.isEmpty()) {
+        if (events.isEmpty()) {
             return EMPTY;
         }
 
-        final SortedSet<SweepEvent> tailSet = set.tailSet(start);
+        events.sort();
+        checkCancelled(status);
+        events.mergeTransitions(start);
+        checkCancelled(status);
+        final int first = events.ceiling(start);
         if (DEBUG) {
-            System.out.println("SweepHelper.build(): set=" + set
-                + ", starting with " + tailSet
-                + ", open=" + open);
+            System.out.println("SweepHelper.build(): " + events.size()
+                + " events, starting at #" + first
+                + ", open=" + open.asSet());
         }
-        return new DefaultIterator(set, open, tailSet.iterator());
+        return new DefaultIterator(events, open, first, status);
     }
 
+    private static void checkCancelled(final CancelStatus status) {
+        if (status.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Takes the raw indices of begin and end within .events.
+     */
     private boolean ordered(
-    final SweepEvent begin, final SweepEvent middle, final SweepEvent end) {
-        if (EVENT_COMPARATOR.compare(begin, end) < 0) {
+    final int begin, final SweepEvent middle, final int end) {
+        if (events.compare(begin, end) < 0) {
             /*
              * Normal order. Behave as if we can cut the circle at 0 without
              * breaking the begin->end segment:
              * 
              * return (begin < middle < end); // Ternary <
              */
-            return EVENT_COMPARATOR.compare(begin, middle) < 0
-                && EVENT_COMPARATOR.compare(middle, end) < 0;
+            return events.compare(begin, middle) < 0
+                && events.compare(end, middle) > 0;
         }
 
         /*
@@ -163,36 +214,45 @@ public final class SweepHelper {
          * 
          * return (end > middle) || (middle > begin);
          */
-        return EVENT_COMPARATOR.compare(end, middle) > 0
-            || EVENT_COMPARATOR.compare(middle, begin) > 0;
+        return events.compare(end, middle) > 0
+            || events.compare(begin, middle) < 0;
     }
 
     public interface SweepEventIterator
     extends Iterator<SweepEvent> {
         Set<ImmutableLine> getOpenSet();
+
+        /**
+         * @return the open line nearest to the source along the ray of the
+         *         most recent event, or null if there is none
+         */
+        ImmutableLine getNearest();
     }
 
     private static final class DefaultIterator
     extends UnmodifiableIterator<SweepEvent> implements SweepEventIterator {
-        private final SortedSet<SweepEvent> events;
+        private final AngularEventList events;
 
-        private final Set<ImmutableLine> open;
+        private final OpenLineTree open;
 
-        private Iterator<SweepEvent> iter;
+        private final CancelStatus status;
 
-        public DefaultIterator(final SortedSet<SweepEvent> events,
-        final Set<ImmutableLine> open, final Iterator<SweepEvent> iter) {
+        private int cursor;
+
+        private int steps;
+
+        public DefaultIterator(final AngularEventList events,
+        final OpenLineTree open, final int cursor,
+        final CancelStatus status) {
             this.events = events;
             this.open = open;
-            this.iter = iter;
+            this.cursor = cursor;
+            this.status = status;
         }
 
         @Override
         public boolean hasNext() {
-            if (!iter.hasNext()) {
-                iter = events.iterator();
-            }
-            return iter.hasNext();
+            return events.size() > 0;
         }
 
         @Override
@@ -200,14 +260,25 @@ public final class SweepHelper {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            final SweepEvent next = iter.next();
+            if (0 == (++steps & (CANCEL_CHECK_INTERVAL - 1))
+                && status.isCancelled()) {
+                throw new CancellationException();
+            }
+            if (cursor >= events.size()) {
+                /* Wrap around */
+                cursor = 0;
+            }
+            final SweepEvent next = events.get(cursor++);
             switch (next.type) {
                 case BEGIN:
-                    open.add(next.l);
+                    open.add(next.l, next.p);
                     break;
                 case END:
                     open.remove(next.l);
                     break;
+                case TRANSITION:
+                    open.replace(next.end.l, next.l, next.p);
+                    break;
                 case POINT:
                     break;
                 default:
@@ -218,14 +289,16 @@ public final class SweepHelper {
 
         @Override
         public Set<ImmutableLine> getOpenSet() {
+            return open.asSet();
+        }
+
+        @Override
+        public ImmutableLine getNearest() {
             /*
              * Once inserted / added, there is a clearly defined order on the
-             * open set (visibility order from source).
-             * 
-             * TODO: Implement this order for efficiency? (O(n^2) -> O(n log
-             * n)))
+             * open set (visibility order from source), so this is O(log n).
              */
-            return Collections.unmodifiableSet(open);
+            return open.getNearest();
         }
     }
 }
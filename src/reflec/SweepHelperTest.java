@@ -4,11 +4,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import org.junit.Test;
 
+import reflec.Buffer.CancelStatus;
 import reflec.SweepEvent.Type;
 import reflec.SweepHelper.SweepEventIterator;
 
@@ -17,6 +21,9 @@ import com.google.common.collect.ImmutableSet;
 public final class SweepHelperTest {
     private static final ImmutablePoint ORIGIN = new ImmutablePoint(0, 0);
 
+    /** More than SweepHelper.CANCEL_CHECK_INTERVAL */
+    private static final int CANCELLED_LINES = 2000;
+
     public SweepHelperTest() {
         /* Nothing to do here */
     }
@@ -84,6 +91,110 @@ public final class SweepHelperTest {
         assertSame(ev1, ev3);
     }
 
+    @Test
+    public void testNearest() {
+        final ImmutableLine near = new ImmutableLine(1, -1, 1, 1);
+        final ImmutableLine far = new ImmutableLine(2, -3, 2, 3);
+        final ImmutableLine behind = new ImmutableLine(3, -1, 3, 1);
+        final SweepEventIterator iter =
+            sweep(ImmutableSet.of(behind, far, near));
+        assertEquals(null, iter.getNearest());
+
+        final SweepEvent ev1 = iter.next();
+        assertSame(far, ev1.l);
+        assertSame(far, iter.getNearest());
+
+        final SweepEvent ev2 = iter.next();
+        assertSame(Type.BEGIN, ev2.type);
+        assertSame(near, iter.getNearest());
+
+        iter.next();
+        assertSame(near, iter.getNearest());
+        assertEquals(3, iter.getOpenSet().size());
+
+        final SweepEvent ev4 = iter.next();
+        assertSame(behind, ev4.l);
+        assertSame(Type.END, ev4.type);
+        assertSame(near, iter.getNearest());
+
+        final SweepEvent ev5 = iter.next();
+        assertSame(near, ev5.l);
+        assertSame(Type.END, ev5.type);
+        assertSame(far, iter.getNearest());
+    }
+
+    @Test
+    public void testTransition() {
+        /* One wall, as two mirrors */
+        final ImmutablePoint vertex = new ImmutablePoint(1, 0);
+        final ImmutableLine first =
+            new ImmutableLine(new ImmutablePoint(1, -2), vertex);
+        final ImmutableLine second =
+            new ImmutableLine(vertex, new ImmutablePoint(1, 2));
+        final SweepEventIterator iter = sweep(ImmutableSet.of(second, first));
+
+        final SweepEvent ev1 = iter.next();
+        assertSame(first, ev1.l);
+        assertSame(Type.BEGIN, ev1.type);
+
+        final SweepEvent ev2 = iter.next();
+        assertSame(Type.TRANSITION, ev2.type);
+        assertSame(vertex, ev2.p);
+        assertSame(second, ev2.l);
+        assertSame(ev2.begin.l, ev2.l);
+        assertSame(Type.BEGIN, ev2.begin.type);
+        assertSame(first, ev2.end.l);
+        assertSame(Type.END, ev2.end.type);
+        assertEquals(ImmutableSet.of(second), iter.getOpenSet());
+        assertSame(second, iter.getNearest());
+
+        final SweepEvent ev3 = iter.next();
+        assertSame(second, ev3.l);
+        assertSame(Type.END, ev3.type);
+        assertEquals(null, iter.getNearest());
+
+        /* Around again, with the very same events */
+        assertSame(ev1, iter.next());
+        assertSame(ev2, iter.next());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancelledWhilePreparing() {
+        new SweepHelper(ORIGIN).prepare(manyLines(), cancelledAfter(0));
+    }
+
+    /**
+     * Not cancelled at the start of build(), but while sorting.
+     */
+    @Test(expected = CancellationException.class)
+    public void testCancelledWhileSorting() {
+        final SweepHelper helper = new SweepHelper(ORIGIN);
+        helper.prepare(manyLines());
+        helper.build(cancelledAfter(1));
+    }
+
+    private static List<ImmutableLine> manyLines() {
+        final List<ImmutableLine> lines = new ArrayList<>();
+        for (int i = 0; i < CANCELLED_LINES; ++i) {
+            lines.add(new ImmutableLine(1, i, 2, i + 1));
+        }
+        return lines;
+    }
+
+    /**
+     * @return a status that is cancelled after being asked so many times
+     */
+    private static CancelStatus cancelledAfter(final int calls) {
+        return new CancelStatus() {
+            private int count;
+
+            @Override
+            public boolean isCancelled() {
+                return count++ >= calls;
+            }
+        };
+    }
+
     private static SweepEventIterator sweep(final Set<ImmutableLine> lines) {
         final SweepHelper helper = new SweepHelper(ORIGIN);
         helper.prepare(lines);
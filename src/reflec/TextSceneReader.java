@@ -0,0 +1,358 @@
+package reflec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * Reads the text format of Model.from, but much faster: straight from the
+ * bytes of a channel, without a String per number.
+ *
+ * Plain decimal numbers of up to 15 significant digits, which is what
+ * exports usually contain, are converted right here. The result is
+ * correctly rounded, as both the digits and the power of ten are exact
+ * doubles, so there's only one rounding step. Longer numbers are left to
+ * Double.parseDouble, and anything else (NaN, grouping like "1,000", ...) to
+ * a Scanner, so exactly the same numbers are accepted as by Model.from.
+ * The same goes for polylines and polygons.
+ */
+public final class TextSceneReader {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int INITIAL_TOKEN_SIZE = 32;
+
+    /** More significant digits than this might not fit into a double */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /** All powers of ten that are exact doubles */
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /** Caps the exponent, so a long one can't overflow the int */
+    private static final int MAX_EXPONENT = 100000;
+
+    private static final int COORDS_PER_MIRROR = 4;
+
+    private static final byte[] POLYLINE =
+        Model.POLYLINE.getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] POLYGON =
+        Model.POLYGON.getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+    private byte[] token = new byte[INITIAL_TOKEN_SIZE];
+
+    private int tokenLength;
+
+    /** Offset of the current token within the input */
+    private long tokenOffset;
+
+    /** Offset of chunk[0] within the input */
+    private long chunkOffset;
+
+    private TextSceneReader(final ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static Model read(final File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            return read(in.getChannel());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a model from the channel, until its end.
+     *
+     * @throws IOException
+     *             if it can't be read, or isn't in the text format, with the
+     *             byte offset of the problem
+     */
+    public static Model read(final ReadableByteChannel channel)
+    throws IOException {
+        return new TextSceneReader(channel).readModel();
+    }
+
+    private Model readModel() throws IOException {
+        chunk.flip();
+        final double[] coords = new double[COORDS_PER_MIRROR];
+        for (int i = 0; i < COORDS_PER_MIRROR; ++i) {
+            if (!nextToken()) {
+                throw new IOException(
+                    "Missing source or sink at byte " + tokenOffset);
+            }
+            coords[i] = parseToken();
+        }
+        final Model.Builder b = Model.builder(
+            new ImmutablePoint(coords[0], coords[1]),
+            new ImmutablePoint(coords[2], coords[3]));
+
+        while (nextToken()) {
+            if (isToken(POLYLINE)) {
+                readChain(b, false);
+                continue;
+            }
+            if (isToken(POLYGON)) {
+                readChain(b, true);
+                continue;
+            }
+            coords[0] = parseToken();
+            for (int i = 1; i < COORDS_PER_MIRROR; ++i) {
+                if (!nextToken()) {
+                    throw new IOException(
+                        "Incomplete mirror at byte " + tokenOffset);
+                }
+                coords[i] = parseToken();
+            }
+            b.add(new ImmutableLine(coords[0], coords[1],
+                coords[2], coords[3]));
+        }
+        return b.build();
+    }
+
+    private void readChain(final Model.Builder b, final boolean closed)
+    throws IOException {
+        final long chainOffset = tokenOffset;
+        if (!nextToken()) {
+            throw new IOException("Missing point count at byte " + tokenOffset);
+        }
+        final int count = parseCount();
+        if (count < (closed ? Model.MIN_POLYGON_POINTS
+            : Model.MIN_POLYLINE_POINTS)) {
+            throw new IOException("Too few points at byte " + chainOffset);
+        }
+
+        final List<ImmutablePoint> points =
+            new ArrayList<>(Math.min(count, Model.MAX_INITIAL_CHAIN_SIZE));
+        for (int i = 0; i < count; ++i) {
+            if (!nextToken()) {
+                throw new IOException(
+                    "Incomplete chain at byte " + chainOffset);
+            }
+            final double x = parseToken();
+            if (!nextToken()) {
+                throw new IOException(
+                    "Incomplete chain at byte " + chainOffset);
+            }
+            points.add(new ImmutablePoint(x, parseToken()));
+        }
+        if (closed) {
+            b.addPolygon(points);
+        } else {
+            b.addPolyline(points);
+        }
+    }
+
+    private boolean isToken(final byte[] keyword) {
+        if (tokenLength != keyword.length) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; ++i) {
+            if (token[i] != keyword[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whatever Scanner.nextInt would make of the token. That's only once per
+     * chain, so there's no need for anything faster.
+     */
+    private int parseCount() throws IOException {
+        final String str = new String(token, 0, tokenLength,
+            StandardCharsets.UTF_8);
+        final Scanner scanner = new Scanner(str);
+        scanner.useLocale(Locale.US);
+        try {
+            if (scanner.hasNextInt()) {
+                final int ret = scanner.nextInt();
+                if (!scanner.hasNext()) {
+                    return ret;
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        throw new IOException(
+            "Not a point count at byte " + tokenOffset + ": " + str);
+    }
+
+    /**
+     * Same as Scanner's default delimiter, for ASCII.
+     */
+    private static boolean isWhitespace(final byte c) {
+        return ' ' == c || ('\t' <= c && c <= '\r') || (0x1C <= c && c <= 0x1F);
+    }
+
+    /**
+     * Collects the next token into token[0 .. tokenLength).
+     *
+     * @return false at the end of the input
+     */
+    private boolean nextToken() throws IOException {
+        tokenLength = 0;
+        while (true) {
+            if (!chunk.hasRemaining() && !fill()) {
+                if (0 == tokenLength) {
+                    tokenOffset = chunkOffset;
+                }
+                return tokenLength > 0;
+            }
+            final byte[] arr = chunk.array();
+            int pos = chunk.position();
+            final int limit = chunk.limit();
+            if (0 == tokenLength) {
+                while (pos < limit && isWhitespace(arr[pos])) {
+                    ++pos;
+                }
+                tokenOffset = chunkOffset + pos;
+            }
+            final int start = pos;
+            while (pos < limit && !isWhitespace(arr[pos])) {
+                ++pos;
+            }
+            append(arr, start, pos - start);
+            chunk.position(pos);
+            if (pos < limit && tokenLength > 0) {
+                return true;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        chunkOffset += chunk.limit();
+        chunk.clear();
+        int n;
+        do {
+            n = channel.read(chunk);
+        } while (0 == n);
+        chunk.flip();
+        return n > 0;
+    }
+
+    private void append(final byte[] arr, final int from, final int len) {
+        if (tokenLength + len > token.length) {
+            token = Arrays.copyOf(token,
+                Math.max(2 * token.length, tokenLength + len));
+        }
+        System.arraycopy(arr, from, token, tokenLength, len);
+        tokenLength += len;
+    }
+
+    private double parseToken() throws IOException {
+        int i = 0;
+        boolean negative = false;
+        if (i < tokenLength && ('-' == token[i] || '+' == token[i])) {
+            negative = '-' == token[i];
+            ++i;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean inFraction = false;
+        for (; i < tokenLength; ++i) {
+            final int c = token[i];
+            if ('0' <= c && c <= '9') {
+                ++digits;
+                if (0 != mantissa || '0' != c) {
+                    ++significant;
+                }
+                if (significant <= MAX_FAST_DIGITS) {
+                    mantissa = 10 * mantissa + (c - '0');
+                    if (inFraction) {
+                        --exponent;
+                    }
+                } else if (!inFraction) {
+                    ++exponent;
+                }
+            } else if ('.' == c && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (0 == digits) {
+            return parseSlowly();
+        }
+
+        if (i < tokenLength && ('e' == token[i] || 'E' == token[i])) {
+            ++i;
+            boolean negativeExp = false;
+            if (i < tokenLength && ('-' == token[i] || '+' == token[i])) {
+                negativeExp = '-' == token[i];
+                ++i;
+            }
+            int exp = 0;
+            final int expStart = i;
+            for (; i < tokenLength && '0' <= token[i] && token[i] <= '9';
+                ++i) {
+                exp = Math.min(MAX_EXPONENT, 10 * exp + (token[i] - '0'));
+            }
+            if (expStart == i) {
+                return parseSlowly();
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (i != tokenLength) {
+            return parseSlowly();
+        }
+
+        if (significant > MAX_FAST_DIGITS
+            || exponent < -(POW10.length - 1)
+            || exponent > POW10.length - 1) {
+            /* Plain, but too long for the fast path */
+            return Double.parseDouble(
+                new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+        }
+        final double ret;
+        if (exponent >= 0) {
+            ret = mantissa * POW10[exponent];
+        } else {
+            ret = mantissa / POW10[-exponent];
+        }
+        return negative ? -ret : ret;
+    }
+
+    /**
+     * Whatever Model.from would make of the token.
+     */
+    private double parseSlowly() throws IOException {
+        final Scanner scanner = new Scanner(
+            new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+        scanner.useLocale(Locale.US);
+        try {
+            final double ret = scanner.nextDouble();
+            if (!scanner.hasNext()) {
+                return ret;
+            }
+        } catch (final InputMismatchException e) {
+            /* Fall through */
+        } catch (final NoSuchElementException e) {
+            /* Fall through */
+        } finally {
+            scanner.close();
+        }
+        throw new IOException("Not a number at byte " + tokenOffset + ": "
+            + new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+    }
+}
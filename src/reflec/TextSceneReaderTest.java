@@ -0,0 +1,133 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static reflec.ModelAssert.assertSameModel;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public final class TextSceneReaderTest {
+    private static final int FUZZ_COUNT = 20000;
+
+    public TextSceneReaderTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testSameAsScanner() throws IOException {
+        for (final String name : new String[] {"sample.txt", "buildings.txt"}) {
+            final File file = new File(name);
+            assertSameModel(Model.from(new Scanner(file, "UTF-8")),
+                TextSceneReader.read(file));
+        }
+    }
+
+    @Test
+    public void testOddTokens() throws IOException {
+        final String text = "+1 -2.5\t.5 5.\r\n"
+            + "1e3 2E-2 1,000 -1e-5\n"
+            + "0.1234567890123456789 -0 123456789012345678901234 1e300\n";
+        assertSameModel(Model.from(new Scanner(text)), read(text));
+    }
+
+    @Test
+    public void testFuzz() throws IOException {
+        final Random rand = new Random(42);
+        final StringBuilder text = new StringBuilder("0 0 1 1\n");
+        for (int i = 0; i < FUZZ_COUNT; ++i) {
+            switch (i % 3) {
+                case 0:
+                    text.append(rand.nextDouble() * 10000);
+                    break;
+                case 1:
+                    text.append(String.format("%.3f",
+                        Double.valueOf((rand.nextDouble() - 0.5) * 1e6)));
+                    break;
+                default:
+                    text.append(rand.nextInt(1000000)).append('.')
+                        .append(rand.nextInt(1000)).append("e-")
+                        .append(rand.nextInt(30));
+                    break;
+            }
+            text.append(0 == i % 4 ? '\n' : ' ');
+        }
+        final String str = text.toString().replace(',', '.');
+        assertSameModel(Model.from(new Scanner(str)), read(str));
+    }
+
+    @Test
+    public void testChains() throws IOException {
+        final String text = "0 0 9 9\n"
+            + "polyline 3 1 1 2 1 2 2\n"
+            + "5 5 6 6 polygon 3 -1 -1 -2 -1 -2 -2\n"
+            + "polyline 2 7 7 8 8\n";
+        final Model model = read(text);
+        assertSameModel(Model.from(new Scanner(text)), model);
+        assertEquals(2 + 1 + 3 + 1, model.getMirrors().size());
+
+        /* Neighbours share their vertex */
+        final ImmutableList<ImmutableLine> lines = model.getMirrors().asList();
+        assertTrue(lines.get(0).p2 == lines.get(1).p1);
+        assertTrue(lines.get(5).p2 == lines.get(3).p1);
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("1 2 3", "Missing source or sink at byte 5");
+        assertError("1 2 3 4\n5 6 7", "Incomplete mirror at byte 13");
+        assertError("1 2 3 4\n5 6 x 8", "Not a number at byte 12: x");
+        assertError("1 2 3 4 polygon 2 0 0 1 1", "Too few points at byte 8");
+        assertError("1 2 3 4 polyline 3 0 0 1 1",
+            "Incomplete chain at byte 8");
+        assertError("1 2 3 4 polyline 2.0 0 0 1 1",
+            "Not a point count at byte 17: 2.0");
+    }
+
+    /**
+     * A truncated chain claiming a huge point count must not make either
+     * parser allocate all of it up front.
+     */
+    @Test
+    public void testHugeCount() {
+        final String text = "1 2 3 4 polyline " + Integer.MAX_VALUE
+            + " 0 0 1 1";
+        assertError(text, "Incomplete chain at byte 8");
+        try {
+            Model.from(new Scanner(text));
+            assertTrue(false);
+        } catch (final IOException e) {
+            /* Expected, just no OutOfMemoryError */
+        }
+    }
+
+    private static void assertError(final String text, final String msg) {
+        try {
+            read(text);
+            assertTrue(false);
+        } catch (final IOException e) {
+            assertEquals(msg, e.getMessage());
+        }
+    }
+
+    private static Model read(final String text) throws IOException {
+        /* Small reads, so tokens are split between chunks */
+        return TextSceneReader.read(Channels.newChannel(
+            new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+                @Override
+                public synchronized int read(final byte[] b, final int off,
+                final int len) {
+                    return super.read(b, off, Math.min(len, 7));
+                }
+            }));
+    }
+}
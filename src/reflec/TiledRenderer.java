@@ -0,0 +1,190 @@
+package reflec;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reflec.Buffer.CancelStatus;
+import reflec.PainterFactory.Painter;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Paints a Scene into an image, possibly split into horizontal bands.
+ *
+ * Each band gets its own clipped Graphics2D and Painter, so the bands only
+ * ever touch their own pixels, and can be painted at the same time. The
+ * Painter culls against its clip, so each band only rasterizes what it
+ * actually shows.
+ *
+ * Antialiasing is on unless switched off with antialiased(false), which is
+ * much faster and lets DefaultPainter batch. With antialiasing, the result
+ * doesn't depend on the number of bands. Without, Java2D rounds paths that
+ * leave the clip a bit differently, so some lines may be off by a pixel.
+ */
+public final class TiledRenderer {
+    public static final TiledRenderer SEQUENTIAL =
+        new TiledRenderer(null, true);
+
+    /** Bands aren't made smaller than this many rows */
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    /** That many bands per worker, so slow bands don't hold up the rest */
+    private static final int BANDS_PER_THREAD = 2;
+
+    private final ForkJoinPool pool;
+
+    private final boolean antialiased;
+
+    private TiledRenderer(final ForkJoinPool pool, final boolean antialiased) {
+        this.pool = pool;
+        this.antialiased = antialiased;
+    }
+
+    public static TiledRenderer parallel() {
+        return parallel(PoolHolder.POOL);
+    }
+
+    public static TiledRenderer parallel(final ForkJoinPool pool) {
+        return new TiledRenderer(Preconditions.checkNotNull(pool), true);
+    }
+
+    public boolean isParallel() {
+        return null != pool;
+    }
+
+    /**
+     * @return a renderer like this one, but with or without antialiasing
+     */
+    public TiledRenderer antialiased(final boolean on) {
+        return on == antialiased ? this : new TiledRenderer(pool, on);
+    }
+
+    public boolean isAntialiased() {
+        return antialiased;
+    }
+
+    /**
+     * Paints the scene onto img, which should be config's size.
+     *
+     * @return false if the scene gave up, true if everything was painted
+     */
+    public boolean render(final BufferedImage img, final PaintConfig config,
+    final PainterFactory fac, final Scene scene, final CancelStatus status) {
+        final int height = img.getHeight();
+        int bands = 1;
+        if (null != pool) {
+            bands = Math.max(1, Math.min(
+                pool.getParallelism() * BANDS_PER_THREAD,
+                height / MIN_BAND_HEIGHT));
+        }
+
+        final BandTask task = new BandTask(img, config, fac, antialiased,
+            scene, status, new AtomicBoolean(), bands, 0, bands);
+        if (1 == bands) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return !task.gaveUp.get();
+    }
+
+    /**
+     * Something to paint, possibly several times at once, each time with
+     * another Painter.
+     */
+    public interface Scene {
+        /**
+         * @return false to give up, e.g. if status is cancelled
+         */
+        boolean paint(Painter p, CancelStatus status);
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        /** Not meant for serialization. */
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage img;
+
+        private final PaintConfig config;
+
+        private final PainterFactory fac;
+
+        private final boolean antialiased;
+
+        private final Scene scene;
+
+        private final CancelStatus status;
+
+        private final AtomicBoolean gaveUp;
+
+        private final int bands;
+
+        private final int from;
+
+        private final int to;
+
+        public BandTask(final BufferedImage img, final PaintConfig config,
+        final PainterFactory fac, final boolean antialiased,
+        final Scene scene, final CancelStatus status,
+        final AtomicBoolean gaveUp, final int bands, final int from,
+        final int to) {
+            this.img = img;
+            this.config = config;
+            this.fac = fac;
+            this.antialiased = antialiased;
+            this.scene = scene;
+            this.status = status;
+            this.gaveUp = gaveUp;
+            this.bands = bands;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new BandTask(img, config, fac, antialiased, scene,
+                    status, gaveUp, bands, from, mid),
+                    new BandTask(img, config, fac, antialiased, scene,
+                        status, gaveUp, bands, mid, to));
+                return;
+            }
+
+            /* One band; once one gave up, the image is useless anyway */
+            if (gaveUp.get()) {
+                return;
+            }
+            final int y0 = (int) ((long) img.getHeight() * from / bands);
+            final int y1 = (int) ((long) img.getHeight() * to / bands);
+            final Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                antialiased
+                    ? RenderingHints.VALUE_ANTIALIAS_ON
+                    : RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.clipRect(0, y0, img.getWidth(), y1 - y0);
+            final Painter p = fac.start(config, g);
+            try {
+                if (!scene.paint(p, status)) {
+                    gaveUp.set(true);
+                }
+            } finally {
+                p.dispose();
+                g.dispose();
+            }
+        }
+    }
+
+    private static final class PoolHolder {
+        /** One worker per core. Lazily created, see the holder idiom. */
+        public static final ForkJoinPool POOL = new ForkJoinPool();
+
+        private PoolHolder() {
+            /* Nothing to do here */
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package reflec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import reflec.Buffer.CancelStatus;
+import reflec.PainterFactory.Painter;
+import reflec.TiledRenderer.Scene;
+
+public final class TiledRendererTest {
+    private static final int WIDTH = 300;
+
+    private static final int HEIGHT = 400;
+
+    private static final int THREADS = 4;
+
+    public TiledRendererTest() {
+        /* Nothing to do here */
+    }
+
+    @Test
+    public void testSameAsSequential() {
+        final DefaultMutableModel model =
+            new DefaultMutableModel(Model.defaultModel(), 3);
+        final PaintConfig config = PaintConfig.builder(model.getModel())
+            .buildFor(WIDTH, HEIGHT);
+        final DefaultPainter.Factory fac = new DefaultPainter.Factory();
+        fac.setPaintingBeams(true);
+        final Scene scene = new Scene() {
+            @Override
+            public boolean paint(final Painter p, final CancelStatus status) {
+                for (final ImmutableLine mirr : model.getModel().getMirrors()) {
+                    p.drawMirror(mirr);
+                }
+                for (final RayGroup gr : model.getGroups()) {
+                    p.drawGroup(gr);
+                }
+                for (final Ray r : model.getRays()) {
+                    p.drawRay(r);
+                }
+                return true;
+            }
+        };
+
+        final BufferedImage expected = newImage();
+        assertTrue(TiledRenderer.SEQUENTIAL.render(
+            expected, config, fac, scene, CancelStatus.CONTINUE));
+        final BufferedImage actual = newImage();
+        assertTrue(TiledRenderer.parallel(new ForkJoinPool(THREADS)).render(
+            actual, config, fac, scene, CancelStatus.CONTINUE));
+
+        boolean painted = false;
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+                painted |= 0xFF000000 != expected.getRGB(x, y);
+            }
+        }
+        assertTrue(painted);
+    }
+
+    @Test
+    public void testGiveUp() {
+        final AtomicInteger calls = new AtomicInteger();
+        final boolean done = TiledRenderer.parallel(new ForkJoinPool(THREADS))
+            .render(newImage(), PaintConfig.CLIP_NONE,
+                new DefaultPainter.Factory(), new Scene() {
+                    @Override
+                    public boolean paint(final Painter p,
+                    final CancelStatus status) {
+                        calls.incrementAndGet();
+                        return false;
+                    }
+                }, CancelStatus.CONTINUE);
+        assertTrue(!done);
+        assertTrue(calls.get() > 0);
+    }
+
+    private static BufferedImage newImage() {
+        return new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+}
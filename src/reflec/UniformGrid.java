@@ -0,0 +1,172 @@
+package reflec;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The geometry shared by MirrorIndex and ReceiverIndex: a grid of roughly
+ * square cells over a bounding box, and how rows, columns and wedges map
+ * onto it. Which items go into which cells is up to the index.
+ */
+final class UniformGrid {
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    /** Relative slack for the wedge, to be robust against rounding */
+    private static final double MARGIN_FACTOR = 1e-6;
+
+    private final double minX;
+
+    private final double minY;
+
+    /** Exact extent of the items, unlike the grid */
+    private final double maxX;
+
+    private final double maxY;
+
+    private final double cellWidth;
+
+    private final double cellHeight;
+
+    private final int nx;
+
+    private final int ny;
+
+    private final double margin;
+
+    /**
+     * Spans the grid over the bounding box (x0, y0) - (x1, y1) of all items,
+     * with roughly the given number of cells (at least 1). If there are no
+     * items, x0 > x1.
+     */
+    public UniformGrid(final double x0, final double y0, final double x1,
+    final double y1, final int cells) {
+        if (x0 <= x1) {
+            minX = x0;
+            minY = y0;
+            maxX = x1;
+            maxY = y1;
+        } else {
+            minX = 0;
+            minY = 0;
+            maxX = 0;
+            maxY = 0;
+        }
+        final double width = maxX - minX;
+        final double height = maxY - minY;
+
+        /* Roughly square cells */
+        double side = Math.sqrt(width * height / cells);
+        if (!(side > 0)) {
+            side = Math.max(width, height) / cells;
+        }
+        nx = cellCount(width, side);
+        ny = cellCount(height, side);
+        cellWidth = width > 0 ? width / nx : 1;
+        cellHeight = height > 0 ? height / ny : 1;
+        margin = MARGIN_FACTOR * (width + height);
+    }
+
+    private static int cellCount(final double extent, final double side) {
+        if (!(extent > 0) || !(side > 0)) {
+            return 1;
+        }
+        return (int) Math.max(1,
+            Math.min(MAX_CELLS_PER_AXIS, Math.ceil(extent / side)));
+    }
+
+    public int size() {
+        return nx * ny;
+    }
+
+    public int cell(final int row, final int column) {
+        return row * nx + column;
+    }
+
+    public Rectangle2D.Double getBounds() {
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    public int row(final double y) {
+        return clamp((int) Math.floor((y - minY) / cellHeight), ny);
+    }
+
+    public int column(final double x) {
+        return clamp((int) Math.floor((x - minX) / cellWidth), nx);
+    }
+
+    private static int clamp(final int index, final int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    /**
+     * Determines the columns of the given row that the segment passes
+     * through, with some margin.
+     *
+     * @return false if the segment doesn't pass through the row at all
+     */
+    public boolean columns(final double x1, final double y1, final double x2,
+    final double y2, final int row, final int[] into) {
+        final double bandLow = minY + row * cellHeight;
+        final double bandHigh = bandLow + cellHeight;
+        final double dy = y2 - y1;
+
+        double tLow = 0;
+        double tHigh = 1;
+        if (0 != dy) {
+            final double tA = (bandLow - y1) / dy;
+            final double tB = (bandHigh - y1) / dy;
+            tLow = Math.max(0, Math.min(tA, tB));
+            tHigh = Math.min(1, Math.max(tA, tB));
+            if (tLow > tHigh) {
+                return false;
+            }
+        }
+        final double dx = x2 - x1;
+        final double xA = x1 + tLow * dx;
+        final double xB = x1 + tHigh * dx;
+        into[0] = column(Math.min(xA, xB) - margin);
+        into[1] = column(Math.max(xA, xB) + margin);
+        return true;
+    }
+
+    /**
+     * Clips the grid to what the source can see through the gate, i.e.
+     * everything beyond the gate between the rays from the source through
+     * gate.p1 and gate.p2.
+     *
+     * @param source
+     *            the (mirrored) source
+     * @param gate
+     *            the gate, counter clockwise as seen from source
+     * @return the clipped area, or null if nothing is left
+     */
+    public ClipPolygon wedge(final ImmutablePoint source,
+    final ImmutableLine gate) {
+        /* Start with the bounding box, and cut away what can't be seen */
+        final ClipPolygon area = new ClipPolygon(margin, minX, minY,
+            minX + nx * cellWidth, minY + ny * cellHeight);
+        /* Beyond the gate */
+        area.clip(gate.p1, gate.p2, false);
+        /* After the start of the sight */
+        area.clip(source, gate.p1, true);
+        /* Before the end of the sight */
+        area.clip(source, gate.p2, false);
+        return area.isEmpty() ? null : area;
+    }
+
+    public ClipPolygon newBand() {
+        return new ClipPolygon(margin);
+    }
+
+    /**
+     * Sets band to the part of area in the given row, with some margin.
+     *
+     * @return false if that part is empty
+     */
+    public boolean band(final ClipPolygon area, final int row,
+    final ClipPolygon band) {
+        band.set(area);
+        band.clipY(minY + row * cellHeight - margin, true);
+        band.clipY(minY + (row + 1) * cellHeight + margin, false);
+        return !band.isEmpty();
+    }
+}
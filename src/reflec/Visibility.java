@@ -0,0 +1,212 @@
+package reflec;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * What a RayGroup could see during its sweep: for every direction from its
+ * source, the line that was active (nearest) at that point of the sweep.
+ * This is enough to decide whether a point is visible from the group without
+ * sweeping again, which is all that changes when only the sink moves.
+ *
+ * Directions are pseudo-angles (see ImmutablePoint#pseudoAngle), "unwrapped"
+ * so that they increase monotonically along the sweep: every time the sweep
+ * passes the cut at -2 / 2, further angles get 4 added.
+ */
+public final class Visibility {
+    private static final double FULL_CIRCLE = 4;
+
+    private final AbstractRayGroup owner;
+
+    private final ImmutablePoint center;
+
+    /** Where the sweep started to take things into account */
+    private final double from;
+
+    /** Where the sweep ended */
+    private final double to;
+
+    private final double[] angles;
+
+    private final ImmutableLine[] actives;
+
+    private final boolean[] ccwOfActives;
+
+    private Visibility(final Builder b) {
+        owner = b.owner;
+        center = b.center;
+        from = b.from;
+        to = b.lastAngle;
+        angles = Arrays.copyOf(b.angles, b.size);
+        actives = Arrays.copyOf(b.actives, b.size);
+        ccwOfActives = Arrays.copyOf(b.ccwOfActives, b.size);
+    }
+
+    /**
+     * Creates a Visibility for a group that isn't obstructed at all.
+     */
+    public static Visibility unobstructed(
+    final AbstractRayGroup owner, final ImmutablePoint center) {
+        final Builder b = new Builder(owner, center);
+        b.from = -FULL_CIRCLE / 2;
+        b.lastAngle = Double.POSITIVE_INFINITY;
+        return b.build();
+    }
+
+    public AbstractRayGroup getOwner() {
+        return owner;
+    }
+
+    public ImmutablePoint getCenter() {
+        return center;
+    }
+
+    /**
+     * @return the gate of the owner, which bounds everything it can see
+     */
+    public ImmutableLine getGate() {
+        return owner.getGate();
+    }
+
+    /**
+     * Determines whether the given point would have been found by the sweep,
+     * if it had been the sink.
+     *
+     * @param dst
+     *            the point of interest
+     * @return whether the group can see dst
+     */
+    public boolean sees(final ImmutablePoint dst) {
+        if (!owner.mayReach(dst)) {
+            return false;
+        }
+
+        /* Move it into [from, from + FULL_CIRCLE) */
+        double angle = center.pseudoAngle(dst);
+        while (angle < from) {
+            angle += FULL_CIRCLE;
+        }
+        while (angle >= from + FULL_CIRCLE) {
+            angle -= FULL_CIRCLE;
+        }
+        if (angle > to) {
+            return false;
+        }
+
+        /* Last change at or before angle */
+        int low = 0;
+        int high = angles.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (angles[mid] <= angle) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (0 == low) {
+            /* Nothing recorded, so nothing in the way */
+            return true;
+        }
+
+        final ImmutableLine active = actives[low - 1];
+        return null == active
+            || (active.relativeCCW(dst) >= 0) == ccwOfActives[low - 1];
+    }
+
+    /**
+     * @param dst
+     *            the point of interest
+     * @return the ray to dst through this group, or null if the group can't
+     *         see dst
+     */
+    public Ray rayTo(final ImmutablePoint dst) {
+        if (!sees(dst)) {
+            return null;
+        }
+        return owner.pathTo(dst).build();
+    }
+
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final AbstractRayGroup owner;
+
+        private final ImmutablePoint center;
+
+        private double[] angles = new double[INITIAL_CAPACITY];
+
+        private ImmutableLine[] actives = new ImmutableLine[INITIAL_CAPACITY];
+
+        private boolean[] ccwOfActives = new boolean[INITIAL_CAPACITY];
+
+        private int size;
+
+        private double rawLast = Double.NEGATIVE_INFINITY;
+
+        private double offset;
+
+        private double lastAngle = Double.NEGATIVE_INFINITY;
+
+        private double from = Double.NaN;
+
+        private boolean built;
+
+        public Builder(final AbstractRayGroup owner,
+        final ImmutablePoint center) {
+            this.owner = owner;
+            this.center = center;
+        }
+
+        /**
+         * Records that the sweep has reached the given direction, where the
+         * given line became active.
+         */
+        public void record(final ImmutablePoint towards,
+        final ImmutableLine active, final boolean ccwOfActive) {
+            Preconditions.checkState(!built);
+            advance(center.pseudoAngle(towards));
+            if (size == angles.length) {
+                angles = Arrays.copyOf(angles, 2 * size);
+                actives = Arrays.copyOf(actives, 2 * size);
+                ccwOfActives = Arrays.copyOf(ccwOfActives, 2 * size);
+            }
+            angles[size] = lastAngle;
+            actives[size] = active;
+            ccwOfActives[size] = ccwOfActive;
+            ++size;
+        }
+
+        /**
+         * Records that the sweep has reached the given direction, without
+         * anything changing.
+         */
+        public void advance(final ImmutablePoint towards) {
+            Preconditions.checkState(!built);
+            advance(center.pseudoAngle(towards));
+        }
+
+        private void advance(final double raw) {
+            if (raw < rawLast) {
+                offset += FULL_CIRCLE;
+            }
+            rawLast = raw;
+            lastAngle = raw + offset;
+        }
+
+        /**
+         * Marks the current direction as the first one that counts.
+         */
+        public void start() {
+            Preconditions.checkState(!built);
+            from = lastAngle;
+        }
+
+        public Visibility build() {
+            Preconditions.checkState(!built);
+            built = true;
+            return new Visibility(this);
+        }
+    }
+}